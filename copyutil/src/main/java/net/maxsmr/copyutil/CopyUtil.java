@@ -1,25 +1,41 @@
 package net.maxsmr.copyutil;
 
+import net.maxsmr.copyutil.utils.AhoCorasickMatcher;
 import net.maxsmr.copyutil.utils.ArgsParser;
-import net.maxsmr.copyutil.utils.CompareUtils;
+import net.maxsmr.copyutil.utils.BoundedExecutor;
+import net.maxsmr.copyutil.utils.ContentDigest;
 import net.maxsmr.copyutil.utils.FileHelper;
+import net.maxsmr.copyutil.utils.JvmUtils;
+import net.maxsmr.copyutil.utils.PathPattern;
+import net.maxsmr.copyutil.utils.PathTrie;
 import net.maxsmr.copyutil.utils.support.Pair;
-import net.maxsmr.copyutil.utils.Predicate;
 import net.maxsmr.copyutil.utils.StreamUtils;
 import net.maxsmr.copyutil.utils.TextUtils;
+import net.maxsmr.copyutil.utils.Units;
 import net.maxsmr.copyutil.utils.logger.BaseLogger;
 import net.maxsmr.copyutil.utils.logger.SimpleSystemLogger;
 import net.maxsmr.copyutil.utils.logger.holder.BaseLoggerHolder;
 
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.LinkedHashMap;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.TimeUnit;
 
+import static net.maxsmr.copyutil.utils.Units.sizeToString;
 import static net.maxsmr.copyutil.utils.Units.timeToString;
 
 public class CopyUtil {
@@ -31,11 +47,23 @@ public class CopyUtil {
     private static final String lineSeparator = "line.separator";
 
     private static final String[] argsNames =
-            {"-pathsListFile", "-sourcePath", "-destinationPath", "-renameFiles", "-deleteEmptyDirs", "-deleteCopiedFiles", "-ignoreExcludedPaths", "-excludeSourcePathsFile", "-forceOverwrite", "-disableRecursion"};
+            {"-pathsListFile", "-sourcePath", "-destinationPath", "-renameFiles", "-deleteEmptyDirs", "-deleteCopiedFiles", "-ignoreExcludedPaths", "-excludeSourcePathsFile", "-forceOverwrite", "-disableRecursion", "-threads", "-virtualThreads", "-copyStrategy", "-mappedCopyMinSize", "-chunkedCopyMinSize", "-offHeapLedger", "-sync", "-destinationIndex", "-journal", "-resume", "-digest", "-manifestFile", "-dedup", "-deltaMinSize"};
+
+    private static final int DEFAULT_VIRTUAL_THREADS_COUNT = 256;
+
+    /**
+     * count of entries formatted into one log message of report
+     */
+    private static final int REPORT_BATCH_SIZE = 1000;
 
     private static final String[] excludedPaths =
             {"Boot", "Documents and Settings", "ProgramData", "Program Files", "Program Files (x86)", "Recovery", "System Volume Information", "Windows", "Users"};
 
+    /**
+     * finds any of {@link #excludedPaths} in path ignoring case
+     */
+    private static final AhoCorasickMatcher excludedPathsMatcher = new AhoCorasickMatcher(Arrays.asList(excludedPaths), true);
+
 
     static {
         System.setErr(System.out);
@@ -58,6 +86,8 @@ public class CopyUtil {
     private static List<String> pathsToHandleList;
     private static File excludeSourcePathsListFile;
     private static List<String> excludeSourcePathsList;
+    private static PathTrie excludeSourcePathsTrie;
+    private static List<PathPattern> excludeSourcePathsPatterns;
 
     private static File sourcePathFile;
     private static File destinationPathFile;
@@ -68,6 +98,21 @@ public class CopyUtil {
     private static boolean ignoreExcludedPaths;
     private static boolean forceOverwrite;
     private static boolean disableRecursion;
+    private static int threadsCount;
+    private static boolean virtualThreads;
+    private static boolean sync;
+    private static DestinationIndex destinationIndex;
+    private static boolean journal;
+    private static boolean resume;
+    private static RunJournal runJournal;
+    private static String digestAlgorithm;
+    private static DigestManifest digestManifest;
+    private static DuplicatesIndex duplicatesIndex;
+    private static DeletionQueue deletionQueue;
+    private static FileHelper.CopyStrategy copyStrategy;
+    private static long mappedCopyMinSize;
+    private static long chunkedCopyMinSize;
+    private static long deltaMinSize;
 
     private static String getPathsListFile() {
         return argsParser.getPairArg(argsParser.findArgWithIndex(0, true));
@@ -109,12 +154,137 @@ public class CopyUtil {
         return argsParser.containsArg(9, true);
     }
 
+    /**
+     * @return 0 if not specified
+     */
+    private static int getThreadsCount() {
+        final long threadsCount = getPositiveLongArg(10);
+        if (threadsCount > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Incorrect threads count: " + threadsCount);
+        }
+        return (int) threadsCount;
+    }
+
+    private static boolean virtualThreads() {
+        return argsParser.containsArg(11, true);
+    }
+
+    private static boolean offHeapLedger() {
+        return argsParser.containsArg(15, true);
+    }
+
+    private static boolean sync() {
+        return argsParser.containsArg(16, true);
+    }
+
+    private static boolean useDestinationIndex() {
+        return argsParser.containsArg(17, true);
+    }
+
+    private static boolean useJournal() {
+        return argsParser.containsArg(18, true);
+    }
+
+    private static boolean resume() {
+        return argsParser.containsArg(19, true);
+    }
+
+    /**
+     * @return null if not specified
+     */
+    private static String getDigestAlgorithm() {
+        final String algorithm = TextUtils.trim(argsParser.getPairArg(argsParser.findArgWithIndex(20, true)), false, true);
+        if (TextUtils.isEmpty(algorithm)) {
+            return null;
+        }
+        final ContentDigest digest = ContentDigest.create(algorithm);
+        if (digest == null) {
+            throw new IllegalArgumentException("Unsupported digest algorithm: " + algorithm);
+        }
+        return digest.getAlgorithm();
+    }
+
+    private static String getManifestFile() {
+        return argsParser.getPairArg(argsParser.findArgWithIndex(21, true));
+    }
+
+    private static boolean dedup() {
+        return argsParser.containsArg(22, true);
+    }
+
+    private static FileHelper.CopyStrategy getCopyStrategy() {
+        final String copyStrategyStr = argsParser.getPairArg(argsParser.findArgWithIndex(12, true));
+        if (TextUtils.isEmpty(copyStrategyStr)) {
+            return FileHelper.CopyStrategy.CHANNEL;
+        }
+        try {
+            return FileHelper.CopyStrategy.valueOf(copyStrategyStr.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown copy strategy: " + copyStrategyStr);
+        }
+    }
+
+    /**
+     * @return 0 if not specified
+     */
+    private static long getMappedCopyMinSize() {
+        return getPositiveLongArg(13);
+    }
+
+    /**
+     * @return 0 if not specified
+     */
+    private static long getChunkedCopyMinSize() {
+        return getPositiveLongArg(14);
+    }
+
+    /**
+     * @return 0 if not specified
+     */
+    private static long getDeltaMinSize() {
+        return getPositiveLongArg(23);
+    }
+
+    /**
+     * @return value following arg with specified index or 0 if arg not specified
+     */
+    private static long getPositiveLongArg(int index) {
+        final String valueStr = argsParser.getPairArg(argsParser.findArgWithIndex(index, true));
+        if (TextUtils.isEmpty(valueStr)) {
+            return 0;
+        }
+        final long value;
+        try {
+            value = Long.parseLong(valueStr.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Incorrect value of \"" + argsNames[index] + "\": " + valueStr);
+        }
+        if (value <= 0) {
+            throw new IllegalArgumentException("Incorrect value of \"" + argsNames[index] + "\": " + value);
+        }
+        return value;
+    }
+
+    private static FileHelper.CopyStrategy selectCopyStrategy(File sourceFile, File destinationFile) {
+        final long size = sourceFile.length();
+        if (deltaMinSize > 0 && size >= deltaMinSize && FileHelper.isFileExists(destinationFile)) {
+            return FileHelper.CopyStrategy.DELTA;
+        }
+        if (chunkedCopyMinSize > 0 && size >= chunkedCopyMinSize) {
+            return FileHelper.CopyStrategy.CHUNKED;
+        }
+        if (mappedCopyMinSize > 0 && size >= mappedCopyMinSize) {
+            return FileHelper.CopyStrategy.MAPPED;
+        }
+        return copyStrategy;
+    }
+
     private static boolean isFileAllowed(File file, boolean isSource) {
         if (file == null) {
             return false;
         }
         if (!ignoreExcludedPaths) {
-            String excluded = Predicate.Methods.find(Arrays.asList(excludedPaths), element -> element != null && CompareUtils.stringMatches(file.getAbsolutePath(), element, CompareUtils.MatchStringOption.CONTAINS_IGNORE_CASE.flag));
+            String excluded = excludedPathsMatcher.findInPath(file.getAbsolutePath());
             if (!TextUtils.isEmpty(excluded)) {
                 logger.e("Not messing with " + (isSource ? "source" : "destination") + " file/directory \"" + file + "\" (contains part \"" + excluded + "\"), skipping...");
                 return false;
@@ -129,8 +299,16 @@ public class CopyUtil {
             if (!filePath.startsWith(prefix)) {
                 throw new RuntimeException("Source file not starts with ");
             }
-            final String part = TextUtils.trim(filePath.substring(prefix.length(), filePath.length()), CompareUtils.Condition.EQUAL, File.separatorChar, true, true);
-            String restrictedRelativePath = Predicate.Methods.find(excludeSourcePathsList, element -> !TextUtils.isEmpty(element) && !element.equals(File.separator) && part.startsWith(element));
+            final String relativePath = filePath.substring(prefix.length(), filePath.length());
+            String restrictedRelativePath = excludeSourcePathsTrie.findPrefix(relativePath);
+            if (TextUtils.isEmpty(restrictedRelativePath)) {
+                for (PathPattern pattern : excludeSourcePathsPatterns) {
+                    if (pattern.matches(relativePath)) {
+                        restrictedRelativePath = pattern.getPattern();
+                        break;
+                    }
+                }
+            }
             if (!TextUtils.isEmpty(restrictedRelativePath)) {
                 logger.e("Source file \"" + file + "\" is excluded by relative path \"" + restrictedRelativePath + "\" from list in \"" + excludeSourcePathsListFile.getName() + "\"");
                 return false;
@@ -139,6 +317,15 @@ public class CopyUtil {
         return true;
     }
 
+    /**
+     * @return path of specified file relative to source path
+     */
+    private static String getSourceRelativePath(File file) {
+        final String prefix = sourcePathFile.getAbsolutePath();
+        final String filePath = file.getAbsolutePath();
+        return filePath.startsWith(prefix) ? filePath.substring(prefix.length(), filePath.length()) : filePath;
+    }
+
     private static boolean isDestinationDirAllowed(File sourceFile, File destinationDir) {
         if (destinationDir == null) {
             return false;
@@ -150,7 +337,181 @@ public class CopyUtil {
         return true;
     }
 
-    private static boolean allowOverwrite(File destinationFile) {
+    /**
+     * @return true if sync mode is on and destination file has same length and modification time as source
+     */
+    private static boolean isUpToDate(File sourceFile, File destinationFile) {
+        if (!sync) {
+            return false;
+        }
+        if (destinationIndex != null) {
+            final DestinationIndex.Entry entry = destinationIndex.get(destinationFile);
+            if (entry != null) {
+                if (entry.lastModified == sourceFile.lastModified() && entry.size == sourceFile.length()) {
+                    logger.i("Destination file \"" + destinationFile + "\" is up to date by index, skipping...");
+                    return true;
+                }
+                return false;
+            }
+        }
+        final long lastModified = destinationFile.lastModified();
+        if (lastModified != 0 && lastModified == sourceFile.lastModified() && destinationFile.length() == sourceFile.length() && destinationFile.isFile()) {
+            logger.i("Destination file \"" + destinationFile + "\" is up to date, skipping...");
+            if (destinationIndex != null) {
+                destinationIndex.put(destinationFile, destinationFile.length(), lastModified, null);
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * keeps destination index, if used, in sync with result of copying or moving to specified file
+     *
+     * @param digest digest of copied content, if computed
+     */
+    private static void updateDestinationIndex(@Nullable File destinationFile, boolean succeeded, @Nullable byte[] digest) {
+        if (destinationIndex == null || destinationFile == null) {
+            return;
+        }
+        if (succeeded) {
+            destinationIndex.put(destinationFile, destinationFile.length(), destinationFile.lastModified(), digest);
+        } else {
+            destinationIndex.remove(destinationFile);
+        }
+    }
+
+    /**
+     * @return new digest of requested algorithm or null if digests are not computed
+     */
+    @Nullable
+    private static ContentDigest createDigest() {
+        return digestAlgorithm != null ? ContentDigest.create(digestAlgorithm) : null;
+    }
+
+    /**
+     * completes digest fed while copying to specified file and writes it to manifest
+     *
+     * @return digest bytes or null if digest is not computed
+     */
+    @Nullable
+    private static byte[] completeDigest(File destinationFile, @Nullable ContentDigest digest) {
+        if (digest == null) {
+            return null;
+        }
+        final byte[] result = digest.digest();
+        if (digestManifest != null) {
+            digestManifest.write(destinationFile, result);
+        }
+        return result;
+    }
+
+    /**
+     * records in journal, if used, that specified source file was copied/moved or skipped as up to date
+     */
+    private static void journalCompleted(File sourceFile, @Nullable File destinationFile) {
+        if (runJournal != null && destinationFile != null) {
+            runJournal.append(sourceFile, destinationFile);
+        }
+    }
+
+    /**
+     * queues deletion of copied source file, if "-deleteCopiedFiles" is on
+     *
+     * @param cleaner to remove directories which became empty with, null if directories should be kept
+     */
+    private static void deleteCopiedFile(File sourceFile, @Nullable EmptyDirsCleaner cleaner) {
+        if (deletionQueue != null) {
+            logger.i("Deleting copied file \"" + sourceFile + "\"...");
+            deletionQueue.submit(sourceFile, cleaner);
+        }
+    }
+
+    /**
+     * creates destination file as hard link to earlier copied file with same content, if dedup is on;
+     * in sync mode only if that copy has same modification time as source, so link is up to date next run
+     *
+     * @param cleaner see {@link #deleteCopiedFile(File, EmptyDirsCleaner)}
+     * @return true if file was linked, false if it should be copied
+     */
+    private static boolean linkDuplicate(File sourceFile, File destinationFile, @Nullable EmptyDirsCleaner cleaner, IResultLedger resultLedger) {
+        if (duplicatesIndex == null) {
+            return false;
+        }
+        final DuplicatesIndex.Entry duplicate = duplicatesIndex.find(sourceFile);
+        if (duplicate == null) {
+            return false;
+        }
+        if (sync && duplicate.destinationFile.lastModified() != sourceFile.lastModified()) {
+            // link shares modification time of earlier copy, so it would never be up to date with this source
+            logger.d("File \"" + sourceFile + "\" is same as \"" + duplicate.sourceFile + "\" but has other modification time, copying...");
+            return false;
+        }
+        if (FileHelper.isFileExists(destinationFile)) {
+            // asking for overwrite is left to copying
+            if (!forceOverwrite || !FileHelper.deleteFile(destinationFile)) {
+                return false;
+            }
+        }
+        final File destinationDir = destinationFile.getParentFile();
+        if (destinationDir == null || !FileHelper.checkDirNoThrow(destinationDir.getAbsolutePath(), true)) {
+            return false;
+        }
+        try {
+            Files.createLink(destinationFile.toPath(), duplicate.destinationFile.toPath());
+        } catch (IOException | UnsupportedOperationException | SecurityException e) {
+            logger.e("Can't link \"" + destinationFile + "\" to \"" + duplicate.destinationFile + "\", copying instead: " + e.getMessage());
+            return false;
+        }
+        logger.i("File \"" + sourceFile + "\" is same as \"" + duplicate.sourceFile + "\", linked \"" + destinationFile + "\" to \"" + duplicate.destinationFile + "\"");
+        duplicatesIndex.onLinked(destinationFile);
+        if (duplicate.digest != null && digestManifest != null) {
+            digestManifest.write(destinationFile, duplicate.digest);
+        }
+        deleteCopiedFile(sourceFile, cleaner);
+        resultLedger.put(sourceFile, destinationFile, IResultLedger.Status.SUCCEEDED);
+        updateDestinationIndex(destinationFile, true, duplicate.digest);
+        journalCompleted(sourceFile, destinationFile);
+        return true;
+    }
+
+    /**
+     * moves whole source subdirectory with single rename
+     *
+     * @param cleaner to be notified when directory is moved, if source directories which became empty should be removed
+     * @return false if it can't be moved so, its files should be moved separately then
+     */
+    private static boolean moveDirectory(RenamePlanner.DirectoryMove move, RenamePlanner planner, @Nullable EmptyDirsCleaner cleaner, IResultLedger resultLedger) {
+        final File destinationParent = move.destinationDir.getParentFile();
+        if (destinationParent == null || !FileHelper.checkDirNoThrow(destinationParent.getAbsolutePath(), true)) {
+            return false;
+        }
+        if (Files.exists(move.destinationDir.toPath(), LinkOption.NOFOLLOW_LINKS)) {
+            // created after planning, rename could replace it if it's empty
+            logger.i("Destination directory \"" + move.destinationDir + "\" appeared, moving files of \"" + move.sourceDir + "\" separately");
+            return false;
+        }
+        logger.i("Renaming directory \"" + move.sourceDir + "\" to \"" + move.destinationDir + "\"...");
+        try {
+            Files.move(move.sourceDir.toPath(), move.destinationDir.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | UnsupportedOperationException e) {
+            logger.e("Directory \"" + move.sourceDir + "\" rename failed, moving its files separately: " + e);
+            return false;
+        }
+        logger.i("Directory \"" + move.sourceDir + "\" renamed successfully to \"" + move.destinationDir + "\" (files: " + move.files.size() + ")");
+        for (File f : move.files) {
+            final File targetFile = planner.getDestinationFile(f);
+            resultLedger.put(f, targetFile, IResultLedger.Status.SUCCEEDED);
+            updateDestinationIndex(targetFile, true, null);
+            journalCompleted(f, targetFile);
+        }
+        if (cleaner != null) {
+            cleaner.folderRemoved(move.sourceDir, move.folders);
+        }
+        return true;
+    }
+
+    private static synchronized boolean allowOverwrite(File destinationFile) {
         boolean result = true;
         if (FileHelper.isFileExists(destinationFile)) {
             if (!forceOverwrite) {
@@ -162,8 +523,112 @@ public class CopyUtil {
         return result;
     }
 
-    private static boolean isSourceFileHandled(Map<Pair<File, File>, Boolean> map, File sourceFile) {
-        return map != null && Predicate.Methods.contains(map.keySet(), element -> element != null && CompareUtils.objectsEqual(element.first, sourceFile));
+    /**
+     * @param canRename false if file is known to be on other file system than destination, so it's copied at once
+     * @param cleaner   to be notified when file is moved or deleted, if source directories which became empty should be removed
+     */
+    private static void renameFile(File f, IResultLedger resultLedger, boolean canRename, @Nullable EmptyDirsCleaner cleaner) {
+
+        if (resultLedger.contains(f)) {
+            return;
+        }
+
+        boolean tryToCopy = false;
+
+        boolean result = false;
+
+        boolean skipped = false;
+
+        File targetFile = null;
+
+        byte[] digest = null;
+
+        try {
+
+            if (!isFileAllowed(f, true)) {
+                return;
+            }
+
+            String part = f.getAbsoluteFile().getParent();
+
+            if (part.startsWith(sourcePathFile.getAbsolutePath())) {
+                part = part.substring(sourcePathFile.getAbsolutePath().length(), part.length()); // remove source path prefix from target file
+            }
+
+            File targetDir = !TextUtils.isEmpty(part) ? new File(destinationPathFile, part) : destinationPathFile;
+            targetFile = new File(targetDir, f.getName());
+
+            if (!isFileAllowed(targetFile, false)
+                    || !isDestinationDirAllowed(f, targetDir)) {
+                return;
+            }
+
+            if (isUpToDate(f, targetFile)) {
+                skipped = true;
+                return;
+            }
+
+            if (canRename) {
+                logger.i("Renaming \"" + f + "\" to \"" + targetFile + "\"...");
+                if (allowOverwrite(targetFile)) {
+                    if (FileHelper.renameFile(f, targetFile.getParent(), targetFile.getName(), true, false) != null) {
+                        logger.i("File \"" + f + "\" renamed successfully to \"" + targetFile + "\"");
+                        result = true;
+                        if (cleaner != null) {
+                            cleaner.entryRemoved(f);
+                        }
+                    } else {
+                        tryToCopy = true;
+                        logger.e("File \"" + f + "\" rename failed to \"" + targetFile + "\"");
+                    }
+                }
+            } else {
+                tryToCopy = true;
+            }
+
+            if (!result && tryToCopy) {
+
+                result = true;
+
+                logger.i("Copying file \"" + f + "\" to \"" + targetFile + "\"...");
+                final ContentDigest contentDigest = createDigest();
+                if (allowOverwrite(targetFile) && FileHelper.copyFileWithBuffering(f, targetFile.getName(), targetFile.getParent(), true, true, selectCopyStrategy(f, targetFile), contentDigest, null) != null) {
+                    logger.i("File \"" + f + "\" copied successfully to " + targetFile);
+                    digest = completeDigest(targetFile, contentDigest);
+                    deleteCopiedFile(f, cleaner);
+                } else {
+                    result = false;
+                    logger.e("File \"" + f + "\" copy failed to \"" + targetFile + "\" !");
+                }
+            }
+
+        } finally {
+            resultLedger.put(f, targetFile, skipped ? IResultLedger.Status.SKIPPED : result ? IResultLedger.Status.SUCCEEDED : IResultLedger.Status.FAILED);
+            if (!skipped) {
+                updateDestinationIndex(targetFile, result, digest);
+            }
+            if (skipped || result) {
+                journalCompleted(f, targetFile);
+            }
+        }
+    }
+
+    /**
+     * logs entries with specified status in batches, so whole report is not built in memory
+     */
+    private static void logResults(IResultLedger resultLedger, IResultLedger.Status status) {
+        final List<Pair<File, File>> batch = new ArrayList<>();
+        resultLedger.forEach(status, (sourceFile, destinationFile) -> {
+            batch.add(new Pair<>(sourceFile, destinationFile));
+            if (batch.size() >= REPORT_BATCH_SIZE) {
+                logger.i(FileHelper.filePairsToString(batch, 0));
+                batch.clear();
+            }
+            return true;
+        });
+        if (!batch.isEmpty()) {
+            logger.i(FileHelper.filePairsToString(batch, 0));
+        }
     }
 
     // TODO draw copy progress
@@ -217,13 +682,89 @@ public class CopyUtil {
         ignoreExcludedPaths = ignoreExcludedPaths();
         forceOverwrite = forceOverwrite();
         disableRecursion = disableRecursion();
+        threadsCount = getThreadsCount();
+        virtualThreads = virtualThreads();
+        sync = sync();
+        if (useDestinationIndex()) {
+            sync = true;
+            destinationIndex = new DestinationIndex(destinationPathFile);
+            if (destinationIndex.load()) {
+                logger.i("Destination index \"" + destinationIndex.getIndexFile() + "\" entries: " + destinationIndex.size());
+            }
+        }
+        resume = resume();
+        journal = resume || useJournal();
+        digestAlgorithm = getDigestAlgorithm();
+        final String manifestPath = TextUtils.trim(getManifestFile(), false, true);
+        if (dedup()) {
+            // digests computed while copying are reused to compare candidates
+            duplicatesIndex = new DuplicatesIndex(digestAlgorithm);
+        }
+        if (deleteCopiedFiles) {
+            // deletion of copied files overlaps with copying of next ones
+            deletionQueue = new DeletionQueue(DeletionQueue.DEFAULT_THREADS_COUNT);
+        }
+        copyStrategy = getCopyStrategy();
+        mappedCopyMinSize = getMappedCopyMinSize();
+        chunkedCopyMinSize = getChunkedCopyMinSize();
+        deltaMinSize = getDeltaMinSize();
 
         Set<Integer> unhandledIndexes = argsParser.getUnhandledArgsIndexes();
         for (Integer index : unhandledIndexes) {
             logger.e("Unknown argument \"" + args[index] + "\" (position: " + index + ")");
         }
 
-        final Map<Pair<File, File>, Boolean> resultMap = new LinkedHashMap<>();
+        // may be accessed from executor threads
+        IResultLedger ledger = null;
+        if (offHeapLedger()) {
+            try {
+                ledger = new OffHeapResultLedger(null);
+                logger.i("Keeping results off heap");
+            } catch (IOException e) {
+                logger.e("Can't create off heap ledger: " + e.getMessage(), e);
+            }
+        }
+        final IResultLedger resultLedger = ledger != null ? ledger : new HeapResultLedger();
+
+        if (digestAlgorithm != null) {
+            final File manifestFile = !TextUtils.isEmpty(manifestPath) ? new File(manifestPath) : new File(destinationPathFile, DigestManifest.MANIFEST_FILE_NAME);
+            final File manifestDir = manifestFile.getAbsoluteFile().getParentFile();
+            if (manifestDir != null && FileHelper.checkDirNoThrow(manifestDir.getAbsolutePath(), true)) {
+                digestManifest = new DigestManifest(destinationPathFile, manifestFile);
+                try {
+                    // lines of interrupted run are kept
+                    digestManifest.open(resume);
+                    logger.i("Writing " + digestAlgorithm + " digests of copied files to \"" + manifestFile + "\"");
+                } catch (IOException e) {
+                    logger.e("Can't open manifest \"" + manifestFile + "\": " + e.getMessage(), e);
+                    digestManifest = null;
+                }
+            } else {
+                logger.e("Can't create directory for manifest \"" + manifestFile + "\"");
+            }
+        }
+
+        if (journal) {
+            if (FileHelper.checkDirNoThrow(destinationPathFile.getAbsolutePath(), true)) {
+                runJournal = new RunJournal(destinationPathFile);
+                if (resume) {
+                    // journaled files are not accessed at all by this run
+                    final int count = runJournal.load((sourceFile, destinationFile) -> {
+                        resultLedger.put(sourceFile, destinationFile, IResultLedger.Status.SKIPPED);
+                        return true;
+                    });
+                    logger.i("Resuming from journal \"" + runJournal.getJournalFile() + "\", already handled files: " + count);
+                }
+                try {
+                    runJournal.open(resume);
+                } catch (IOException e) {
+                    logger.e("Can't open journal \"" + runJournal.getJournalFile() + "\": " + e.getMessage(), e);
+                    runJournal = null;
+                }
+            } else {
+                logger.e("Can't create destination directory \"" + destinationPathFile + "\" for journal");
+            }
+        }
 
         if (pathsToHandleListFile != null) {
             pathsToHandleList = FileHelper.readStringsFromFile(pathsToHandleListFile);
@@ -243,6 +784,36 @@ public class CopyUtil {
         if (!excludeSourcePathsList.isEmpty()) {
             logger.i("Relative paths to exclude from copy/move: " + System.getProperty(lineSeparator) + excludeSourcePathsList + System.getProperty(lineSeparator));
         }
+        excludeSourcePathsTrie = new PathTrie();
+        excludeSourcePathsPatterns = new ArrayList<>();
+        for (String excludeSourcePath : excludeSourcePathsList) {
+            final PathPattern pattern = PathPattern.compile(excludeSourcePath);
+            if (pattern != null) {
+                excludeSourcePathsPatterns.add(pattern);
+            } else {
+                excludeSourcePathsTrie.add(excludeSourcePath);
+            }
+        }
+
+        ExecutorService executorService = null;
+        BoundedExecutor executor = null;
+        if (virtualThreads) {
+            executorService = JvmUtils.newVirtualThreadPerTaskExecutor();
+            if (executorService != null) {
+                executor = new BoundedExecutor(executorService, threadsCount > 0 ? threadsCount : DEFAULT_VIRTUAL_THREADS_COUNT);
+                logger.i("Handling each file in virtual thread, max files in flight: " + executor.getMaxTasksInFlight());
+            } else {
+                logger.e("Virtual threads are not supported by current JVM (" + System.getProperty("java.version") + ")");
+            }
+        }
+        if (executorService == null && threadsCount > 1) {
+            executorService = Executors.newFixedThreadPool(threadsCount);
+            executor = new BoundedExecutor(executorService, threadsCount * 2);
+            logger.i("Handling files with " + threadsCount + " threads");
+        }
+
+        // directories are listed concurrently only when multiple threads requested
+        final ForkJoinPool walkPool = threadsCount > 1 ? new ForkJoinPool(threadsCount) : null;
 
         long startTime = System.nanoTime();
 
@@ -256,16 +827,33 @@ public class CopyUtil {
 
             relativePath = TextUtils.trim(relativePath, false, true);
 
+            // only files matching it are handled within its base directory
+            final PathPattern pathPattern;
+            try {
+                pathPattern = PathPattern.compile(relativePath);
+            } catch (IllegalArgumentException e) {
+                logger.e(e.getMessage());
+                continue;
+            }
+            if (pathPattern != null) {
+                relativePath = !pathPattern.getBaseDir().isEmpty() ? pathPattern.getBaseDir() : File.separator;
+                logger.i("Handling files matching \"" + pathPattern + "\" from \"" + relativePath + "\"");
+            }
+
             final File sourcePathToHandle = !relativePath.equals(File.separator) ? new File(sourcePathFile, relativePath) : sourcePathFile;
 
             if (FileHelper.isFileExists(sourcePathToHandle)) {
 
-                if (!isSourceFileHandled(resultMap, sourcePathToHandle)) {
+                if (!resultLedger.contains(sourcePathToHandle)) {
 
                     boolean result = false;
 
+                    boolean skipped = false;
+
                     File targetFile = null;
 
+                    byte[] digest = null;
+
                     try {
 
                         targetFile = !relativePath.equals(File.separator) ? new File(destinationPathFile, relativePath) : new File(destinationPathFile, sourcePathToHandle.getName());
@@ -279,6 +867,11 @@ public class CopyUtil {
                             continue;
                         }
 
+                        if (isUpToDate(sourcePathToHandle, targetFile)) {
+                            skipped = true;
+                            continue;
+                        }
+
                         boolean tryToCopy = true;
 
                         if (renameFiles) {
@@ -300,21 +893,24 @@ public class CopyUtil {
                             result = true;
 
                             logger.i("Copying file \"" + sourcePathToHandle + "\" to \"" + targetFile + "\"...");
-                            if (allowOverwrite(targetFile) && FileHelper.copyFileWithBuffering(sourcePathToHandle, targetFile.getName(), targetFile.getParent(), true, true, null) != null) {
+                            final ContentDigest contentDigest = createDigest();
+                            if (allowOverwrite(targetFile) && FileHelper.copyFileWithBuffering(sourcePathToHandle, targetFile.getName(), targetFile.getParent(), true, true, selectCopyStrategy(sourcePathToHandle, targetFile), contentDigest, null) != null) {
                                 logger.i("File \"" + sourcePathToHandle + "\" copied successfully to " + targetFile);
-                                if (deleteCopiedFiles) {
-                                    logger.i("Deleting copied file \"" + sourcePathToHandle + "\"...");
-                                    if (!FileHelper.deleteFile(sourcePathToHandle)) {
-                                        logger.e("Delete copied file \"" + sourcePathToHandle + "\" failed!");
-                                    }
-                                }
+                                digest = completeDigest(targetFile, contentDigest);
+                                deleteCopiedFile(sourcePathToHandle, null);
                             } else {
                                 result = false;
                                 logger.e("File \"" + sourcePathToHandle + "\" copy failed to \"" + targetFile + "\" !");
                             }
                         }
                     } finally {
-                        resultMap.put(new Pair<>(sourcePathToHandle, targetFile), result);
+                        resultLedger.put(sourcePathToHandle, targetFile, skipped ? IResultLedger.Status.SKIPPED : result ? IResultLedger.Status.SUCCEEDED : IResultLedger.Status.FAILED);
+                        if (!skipped) {
+                            updateDestinationIndex(targetFile, result, digest);
+                        }
+                        if (skipped || result) {
+                            journalCompleted(sourcePathToHandle, targetFile);
+                        }
                     }
                 }
 
@@ -330,77 +926,108 @@ public class CopyUtil {
 
                 if (isAllowed) {
 
-                    if (renameFiles) {
-
-                        Set<File> filesToRename = FileHelper.getFiles(sourcePathToHandle, FileHelper.GetMode.FILES, null, null, disableRecursion ? 0 : FileHelper.DEPTH_UNLIMITED);
-                        for (File f : filesToRename) {
-
-                            if (!isSourceFileHandled(resultMap, f)) {
-
-                                boolean tryToCopy = false;
-
-                                boolean result = false;
+                    // filled while walking, so directories are not listed again when checking if they became empty
+                    final EmptyDirsCleaner cleaner = deleteEmptyDirs && (renameFiles || deletionQueue != null) ? new EmptyDirsCleaner() : null;
 
-                                File targetFile = null;
-
-                                try {
+                    if (renameFiles) {
 
-                                    if (!isFileAllowed(f, true)) {
-                                        continue;
+                        final Collection<File> filesToRename;
+                        Collection<File> filesToCopy = Collections.emptyList();
+                        if (!disableRecursion) {
+                            // subdirectories not existing in destination are moved whole
+                            final File targetDir = !relativePath.equals(File.separator) ? new File(destinationPathFile, relativePath) : destinationPathFile;
+                            final RenamePlanner planner = new RenamePlanner(sourcePathToHandle, targetDir, new RenamePlanner.IEntryFilter() {
+                                @Override
+                                public boolean acceptFolder(@NotNull File folder) {
+                                    if (!isFileAllowed(folder, true)) {
+                                        resultLedger.put(folder, null, IResultLedger.Status.FAILED);
+                                        return false;
                                     }
+                                    return true;
+                                }
 
-                                    String part = f.getParent();
-
-                                    if (part.startsWith(sourcePathFile.getAbsolutePath())) {
-                                        part = part.substring(sourcePathFile.getAbsolutePath().length(), part.length()); // remove source path prefix from target file
+                                @Override
+                                public boolean acceptFile(@NotNull File file) {
+                                    if (pathPattern != null && !pathPattern.matches(getSourceRelativePath(file)) || resultLedger.contains(file)) {
+                                        return false;
                                     }
-
-                                    File targetDir = !TextUtils.isEmpty(part) ? new File(destinationPathFile, part) : destinationPathFile;
-                                    targetFile = new File(targetDir, f.getName());
-
-                                    if (!isFileAllowed(targetFile, false)
-                                            || !isDestinationDirAllowed(f, targetDir)) {
-                                        continue;
+                                    if (!isFileAllowed(file, true)) {
+                                        resultLedger.put(file, null, IResultLedger.Status.FAILED);
+                                        return false;
                                     }
+                                    return true;
+                                }
 
-                                    logger.i("Renaming \"" + f + "\" to \"" + targetFile + "\"...");
-                                    if (allowOverwrite(targetFile)) {
-                                        if (FileHelper.renameFile(f, targetFile.getParent(), targetFile.getName(), true, deleteEmptyDirs) != null) {
-                                            logger.i("File \"" + f + "\" renamed successfully to \"" + targetFile + "\"");
-                                            result = true;
-                                        } else {
-                                            tryToCopy = true;
-                                            logger.e("File \"" + f + "\" rename failed to \"" + targetFile + "\"");
-                                        }
+                                @Override
+                                public boolean acceptDestination(@NotNull File destination) {
+                                    // same check as for each renamed file, which is left to renameFile
+                                    return isFileAllowed(destination, false);
+                                }
+                            }, cleaner);
+                            planner.plan(walkPool);
+                            filesToRename = planner.getFileMoves();
+                            filesToCopy = planner.getFileCopies();
+                            for (RenamePlanner.DirectoryMove move : planner.getDirectoryMoves()) {
+                                if (!moveDirectory(move, planner, cleaner, resultLedger)) {
+                                    filesToRename.addAll(move.files);
+                                }
+                            }
+                        } else {
+                            final FileHelper.IGetNotifier notifier = new FileHelper.IGetNotifier() {
+                                @Override
+                                public boolean onProcessing(@NotNull File current, @NotNull Set<File> collected, int currentLevel) {
+                                    if (!isFileAllowed(current, true)) {
+                                        resultLedger.put(current, null, IResultLedger.Status.FAILED);
+                                        return false;
                                     }
+                                    return true;
+                                }
 
-                                    if (!result && tryToCopy) {
-
-                                        result = true;
-
-                                        logger.i("Copying file \"" + f + "\" to \"" + targetFile + "\"...");
-                                        if (allowOverwrite(targetFile) && FileHelper.copyFileWithBuffering(f, targetFile.getName(), targetFile.getParent(), true, true, null) != null) {
-                                            logger.i("File \"" + f + "\" copied successfully to " + targetFile);
-                                            if (deleteCopiedFiles) {
-                                                logger.i("Deleting copied file \"" + f + "\"...");
-                                                if (!FileHelper.deleteFile(f)) {
-                                                    logger.e("Delete copied file \"" + f + "\" failed!");
-                                                }
-                                            }
-                                        } else {
-                                            result = false;
-                                            logger.e("File \"" + f + "\" copy failed to \"" + targetFile + "\" !");
-                                        }
-                                    }
+                                @Override
+                                public boolean onGetFile(@NotNull File file) {
+                                    return pathPattern == null || pathPattern.matches(getSourceRelativePath(file));
+                                }
 
-                                } finally {
-                                    resultMap.put(new Pair<>(f, targetFile), result);
+                                @Override
+                                public boolean onGetFolder(@NotNull File folder) {
+                                    return false;
+                                }
+                            };
+                            filesToRename = FileHelper.getFiles(sourcePathToHandle, FileHelper.GetMode.FILES, null, notifier, 0);
+                            if (cleaner != null) {
+                                // subdirectories are not known, so source directory is kept if it has any
+                                cleaner.enterFolder(sourcePathToHandle);
+                                for (File f : filesToRename) {
+                                    cleaner.addEntry(f);
+                                }
+                                cleaner.leaveFolder(sourcePathToHandle);
+                            }
+                        }
+                        for (final File f : filesToCopy) {
+                            if (executor != null) {
+                                if (!executor.execute(() -> renameFile(f, resultLedger, false, cleaner))) {
+                                    break;
+                                }
+                            } else {
+                                renameFile(f, resultLedger, false, cleaner);
+                            }
+                        }
+                        for (final File f : filesToRename) {
+                            if (executor != null) {
+                                if (!executor.execute(() -> renameFile(f, resultLedger, true, cleaner))) {
+                                    break;
                                 }
+                            } else {
+                                renameFile(f, resultLedger, true, cleaner);
                             }
                         }
+                        if (executor != null) {
+                            executor.awaitCompletion();
+                        }
 
                     } else {
                         final File targetDir = !relativePath.equals(File.separator) ? new File(destinationPathFile, relativePath) : destinationPathFile;
+                        // onSucceeded/onFailed are called from executor threads, so only thread-safe state is used here
                         FileHelper.copyFilesWithBuffering2(sourcePathToHandle, targetDir, null, null, new FileHelper.IMultipleCopyNotifier2() {
                             @Override
                             public boolean onCalculatingSize(File current, Set<File> collected) {
@@ -409,21 +1036,64 @@ public class CopyUtil {
 
                             @Override
                             public boolean onProcessing(File currentFile, File destDir, Set<File> copied, long filesProcessed, long filesTotal) {
+                                if (cleaner != null) {
+                                    cleaner.addEntry(currentFile);
+                                }
                                 return !Thread.currentThread().isInterrupted();
                             }
 
+                            @Override
+                            public boolean confirmFolder(File currentFolder, File destDir) {
+                                if (!isFileAllowed(currentFolder, true)) {
+                                    resultLedger.put(currentFolder, destDir, IResultLedger.Status.FAILED);
+                                    if (cleaner != null) {
+                                        cleaner.addEntry(currentFolder);
+                                    }
+                                    return false;
+                                }
+                                if (cleaner != null) {
+                                    cleaner.enterFolder(currentFolder);
+                                }
+                                return true;
+                            }
+
+                            @Override
+                            public void onLeaveFolder(File currentFolder) {
+                                if (cleaner != null) {
+                                    cleaner.leaveFolder(currentFolder);
+                                }
+                            }
+
                             @Override
                             public boolean confirmCopy(File currentFile, File destDir) {
-                                final boolean isConfirmed = !isSourceFileHandled(resultMap, currentFile)
+                                if (pathPattern != null && !pathPattern.matches(getSourceRelativePath(currentFile))) {
+                                    return false;
+                                }
+                                final boolean isHandled = resultLedger.contains(currentFile);
+                                final boolean isConfirmed = !isHandled
                                         && isFileAllowed(currentFile, true)
                                         && isFileAllowed(destDir, false)
                                         && isDestinationDirAllowed(currentFile, destDir);
-                                if (!isConfirmed) {
-                                    resultMap.put(new Pair<>(currentFile, new File(destDir, currentFile.getName())), false);
+                                if (!isConfirmed && !isHandled) {
+                                    resultLedger.put(currentFile, new File(destDir, currentFile.getName()), IResultLedger.Status.FAILED);
+                                }
+                                if (isConfirmed) {
+                                    final File destFile = new File(destDir, currentFile.getName());
+                                    if (isUpToDate(currentFile, destFile)) {
+                                        resultLedger.put(currentFile, destFile, IResultLedger.Status.SKIPPED);
+                                        journalCompleted(currentFile, destFile);
+                                        return false;
+                                    }
                                 }
                                 return isConfirmed;
                             }
 
+                            @Override
+                            public boolean confirmCopyStart(File currentFile, File destFile) {
+                                // duplicate is looked up in copy task, so its files are read concurrently with other copies
+                                return !linkDuplicate(currentFile, destFile, cleaner, resultLedger);
+                            }
+
                             @Override
                             public File onBeforeCopy(File currentFile, File destDir) {
                                 logger.i("Copying file \"" + currentFile + "\" to dir \"" + destDir + "\"...");
@@ -436,49 +1106,112 @@ public class CopyUtil {
                             }
 
                             @Override
-                            public void onSucceeded(File currentFile, File resultFile) {
+                            public FileHelper.CopyStrategy getCopyStrategy(File currentFile, File destFile) {
+                                return selectCopyStrategy(currentFile, destFile);
+                            }
+
+                            @Override
+                            public ContentDigest getContentDigest(File currentFile, File destFile) {
+                                return createDigest();
+                            }
+
+                            @Override
+                            public void onSucceeded(File currentFile, File resultFile, ContentDigest digest) {
                                 logger.i("File \"" + currentFile + "\" copied successfully to \"" + resultFile + "\"");
-                                if (deleteCopiedFiles) {
-                                    logger.i("Deleting copied \"" + currentFile + "\"...");
-                                    if (!FileHelper.deleteFile(currentFile)) {
-                                        logger.e("Delete copied file \"" + currentFile + "\" failed!");
-                                    }
+                                deleteCopiedFile(currentFile, cleaner);
+                                resultLedger.put(currentFile, resultFile, IResultLedger.Status.SUCCEEDED);
+                                final byte[] digestBytes = completeDigest(resultFile, digest);
+                                updateDestinationIndex(resultFile, true, digestBytes);
+                                if (duplicatesIndex != null) {
+                                    duplicatesIndex.add(currentFile, resultFile, digestBytes);
                                 }
-                                resultMap.put(new Pair<>(currentFile, resultFile), true);
+                                journalCompleted(currentFile, resultFile);
                             }
 
                             @Override
                             public void onFailed(File currentFile, File destDir) {
                                 logger.e("File \"" + currentFile + "\" copy failed to dir \"" + destDir + "\" !");
-                                resultMap.put(new Pair<>(currentFile, new File(destDir.getParentFile(), currentFile.getName())), false);
+                                final File destFile = new File(destDir, currentFile.getName());
+                                resultLedger.put(currentFile, destFile, IResultLedger.Status.FAILED);
+                                updateDestinationIndex(destFile, false, null);
                             }
-                        }, true, disableRecursion ? 0 : FileHelper.DEPTH_UNLIMITED, null);
+                        }, true, disableRecursion ? 0 : FileHelper.DEPTH_UNLIMITED, null, executor);
 
-                        if (deleteEmptyDirs) {
+                        // otherwise directories emptied by deletion are removed by cleaner
+                        if (deleteEmptyDirs && cleaner == null) {
                             FileHelper.deleteEmptyDir(sourcePathToHandle);
                         }
                     }
                 }
             } else {
                 logger.wtf("Incorrect source path: \"" + sourcePathToHandle + "\"");
-                resultMap.put(new Pair<>(sourcePathToHandle, null), false);
+                resultLedger.put(sourcePathToHandle, null, IResultLedger.Status.FAILED);
+            }
+        }
+
+        if (executorService != null) {
+            executorService.shutdown();
+        }
+        if (walkPool != null) {
+            walkPool.shutdown();
+        }
+        if (deletionQueue != null) {
+            deletionQueue.shutdown();
+        }
+
+        if (destinationIndex != null && destinationPathFile.isDirectory()) {
+            destinationIndex.save();
+        }
+
+        if (digestManifest != null) {
+            try {
+                digestManifest.close();
+            } catch (IOException e) {
+                logger.e("an IOException occurred during close()", e);
+            }
+        }
+
+        if (runJournal != null) {
+            if (Thread.currentThread().isInterrupted()) {
+                // kept for next run with "-resume"
+                try {
+                    runJournal.close();
+                } catch (IOException e) {
+                    logger.e("an IOException occurred during close()", e);
+                }
+            } else if (!runJournal.delete()) {
+                logger.e("Can't delete journal \"" + runJournal.getJournalFile() + "\"");
             }
         }
 
         final long execTime = System.nanoTime() - startTime;
 
-        final List<Map.Entry<Pair<File, File>, Boolean>> succeededFiles = Predicate.Methods.filter(resultMap.entrySet(), Map.Entry::getValue);
-        final List<Map.Entry<Pair<File, File>, Boolean>> failedFiles = Predicate.Methods.filter(resultMap.entrySet(), element -> !element.getValue());
+        final int succeededCount = resultLedger.getCount(IResultLedger.Status.SUCCEEDED);
+        final int failedCount = resultLedger.getCount(IResultLedger.Status.FAILED);
+        final int skippedCount = resultLedger.getCount(IResultLedger.Status.SKIPPED);
         logger.i("");
-        if (!succeededFiles.isEmpty()) {
+        if (succeededCount > 0) {
             logger.i("[--------------succeeded--------------]");
-            logger.i(FileHelper.filePairsToString(Predicate.Methods.entriesToKeys(succeededFiles), 0));
+            logResults(resultLedger, IResultLedger.Status.SUCCEEDED);
         }
-        if (!failedFiles.isEmpty()) {
+        if (skippedCount > 0) {
+            logger.i("[---------------skipped---------------]");
+            logResults(resultLedger, IResultLedger.Status.SKIPPED);
+        }
+        if (failedCount > 0) {
             logger.i("[---------------failed----------------]");
-            logger.i(FileHelper.filePairsToString(Predicate.Methods.entriesToKeys(failedFiles), 0));
+            logResults(resultLedger, IResultLedger.Status.FAILED);
         }
         logger.i("=======================================");
-        logger.i("Copy/move done; succeeded: " + succeededFiles.size() + ", failed: " + failedFiles.size() + ", elapsed time: " + timeToString(execTime, TimeUnit.NANOSECONDS));
+        logger.i("Copy/move done; succeeded: " + succeededCount + ", skipped: " + skippedCount + ", failed: " + failedCount + ", elapsed time: " + timeToString(execTime, TimeUnit.NANOSECONDS));
+        if (duplicatesIndex != null) {
+            logger.i("Duplicates linked: " + duplicatesIndex.getLinkedCount() + ", bytes saved: " + sizeToString(duplicatesIndex.getSavedBytes(), Units.SizeUnit.BYTES));
+        }
+
+        try {
+            resultLedger.close();
+        } catch (IOException e) {
+            logger.e("an IOException occurred during close()", e);
+        }
     }
 }
@@ -0,0 +1,136 @@
+package net.maxsmr.copyutil;
+
+import net.maxsmr.copyutil.utils.FileHelper;
+import net.maxsmr.copyutil.utils.logger.BaseLogger;
+import net.maxsmr.copyutil.utils.logger.holder.BaseLoggerHolder;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deletes copied source files in background, so copying doesn't wait for it:
+ * files are grouped by directory, files of same directory submitted while its deletion is pending are deleted in same batch;
+ * deleted files are reported to {@link EmptyDirsCleaner}, if specified, so directories which became empty are removed
+ */
+public class DeletionQueue {
+
+    private static final BaseLogger logger = BaseLoggerHolder.getInstance().getLogger(DeletionQueue.class);
+
+    public static final int DEFAULT_THREADS_COUNT = 2;
+
+    private final ExecutorService executor;
+
+    /**
+     * pending batches by directory
+     */
+    private final Map<File, Batch> batches = new HashMap<>();
+
+    private int scheduledCount;
+
+    private long deletedCount;
+
+    private long failedCount;
+
+    public DeletionQueue(int threadsCount) {
+        this.executor = Executors.newFixedThreadPool(threadsCount > 0 ? threadsCount : DEFAULT_THREADS_COUNT);
+    }
+
+    /**
+     * @param cleaner to be notified when file is deleted, null if directories should be kept
+     */
+    public void submit(@NotNull File file, @Nullable EmptyDirsCleaner cleaner) {
+        final File dir = file.getParentFile();
+        synchronized (this) {
+            Batch batch = batches.get(dir);
+            if (batch == null) {
+                batch = new Batch(cleaner);
+                batches.put(dir, batch);
+                scheduledCount++;
+                executor.execute(() -> delete(dir));
+            }
+            batch.files.add(file);
+        }
+    }
+
+    /**
+     * waits until all submitted files are deleted and stops threads
+     */
+    public void shutdown() {
+        synchronized (this) {
+            while (scheduledCount > 0) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    logger.e("an InterruptedException occurred during wait()", e);
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        executor.shutdown();
+        try {
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            logger.e("an InterruptedException occurred during awaitTermination()", e);
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public synchronized long getDeletedCount() {
+        return deletedCount;
+    }
+
+    public synchronized long getFailedCount() {
+        return failedCount;
+    }
+
+    private void delete(@NotNull File dir) {
+        final Batch batch;
+        synchronized (this) {
+            batch = batches.remove(dir);
+        }
+        try {
+            int deleted = 0;
+            for (File file : batch.files) {
+                if (FileHelper.deleteFile(file)) {
+                    deleted++;
+                    if (batch.cleaner != null) {
+                        batch.cleaner.entryRemoved(file);
+                    }
+                } else {
+                    logger.e("Delete copied file \"" + file + "\" failed!");
+                }
+            }
+            synchronized (this) {
+                deletedCount += deleted;
+                failedCount += batch.files.size() - deleted;
+            }
+        } finally {
+            synchronized (this) {
+                scheduledCount--;
+                notifyAll();
+            }
+        }
+    }
+
+    private static class Batch {
+
+        @Nullable
+        final EmptyDirsCleaner cleaner;
+
+        final List<File> files = new ArrayList<>();
+
+        Batch(@Nullable EmptyDirsCleaner cleaner) {
+            this.cleaner = cleaner;
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package net.maxsmr.copyutil;
+
+import net.maxsmr.copyutil.utils.logger.BaseLogger;
+import net.maxsmr.copyutil.utils.logger.holder.BaseLoggerHolder;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * State of destination files as of the end of previous run, stored in one file in destination root:
+ * lets to find out that destination file is up to date without accessing it;
+ * destination changed by someone else is not detected, so index file should be deleted in that case
+ * <p>
+ * format: magic, version, then for each entry: true, path relative to destination root,
+ * size, modification time, digest length and digest bytes; false after last entry
+ */
+public class DestinationIndex {
+
+    private static final BaseLogger logger = BaseLoggerHolder.getInstance().getLogger(DestinationIndex.class);
+
+    public static final String INDEX_FILE_NAME = ".copyutil.index";
+
+    private static final int MAGIC = 0x43554958;
+
+    private static final int VERSION = 1;
+
+    private static final int BUFFER_SIZE = 256 * 1024;
+
+    @NotNull
+    private final File rootDir;
+
+    @NotNull
+    private final File indexFile;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    public DestinationIndex(@NotNull File rootDir) {
+        this.rootDir = rootDir;
+        this.indexFile = new File(rootDir, INDEX_FILE_NAME);
+    }
+
+    @NotNull
+    public File getIndexFile() {
+        return indexFile;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * reads index file if it exists; on read error index is left empty
+     *
+     * @return false if index file exists, but can't be read
+     */
+    public boolean load() {
+        entries.clear();
+        if (!indexFile.isFile()) {
+            return true;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile), BUFFER_SIZE))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not an index file");
+            }
+            final int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported index version: " + version);
+            }
+            while (in.readBoolean()) {
+                final String relativePath = in.readUTF();
+                final long size = in.readLong();
+                final long lastModified = in.readLong();
+                final byte[] digest = new byte[in.readUnsignedShort()];
+                in.readFully(digest);
+                entries.put(relativePath, new Entry(size, lastModified, digest.length > 0 ? digest : null));
+            }
+            return true;
+        } catch (IOException e) {
+            logger.e("Can't read destination index \"" + indexFile + "\": " + e.getMessage(), e);
+            entries.clear();
+            return false;
+        }
+    }
+
+    /**
+     * writes index to temporary file and replaces index file with it
+     *
+     * @return false if write failed; previous index file is kept then
+     */
+    public boolean save() {
+        final File tempFile = new File(rootDir, INDEX_FILE_NAME + ".tmp");
+        try {
+            final FileOutputStream fos = new FileOutputStream(tempFile);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos, BUFFER_SIZE))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                for (Map.Entry<String, Entry> e : entries.entrySet()) {
+                    final Entry entry = e.getValue();
+                    out.writeBoolean(true);
+                    out.writeUTF(e.getKey());
+                    out.writeLong(entry.size);
+                    out.writeLong(entry.lastModified);
+                    out.writeShort(entry.digest != null ? entry.digest.length : 0);
+                    if (entry.digest != null) {
+                        out.write(entry.digest);
+                    }
+                }
+                out.writeBoolean(false);
+                out.flush();
+                fos.getFD().sync();
+            }
+            try {
+                Files.move(tempFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            return true;
+        } catch (IOException e) {
+            logger.e("Can't write destination index \"" + indexFile + "\": " + e.getMessage(), e);
+            if (tempFile.exists() && !tempFile.delete()) {
+                logger.e("Can't delete \"" + tempFile + "\"");
+            }
+            return false;
+        }
+    }
+
+    /**
+     * @return null if destination file is not within root directory or not indexed
+     */
+    @Nullable
+    public Entry get(@NotNull File destinationFile) {
+        final String relativePath = getRelativePath(destinationFile);
+        return relativePath != null ? entries.get(relativePath) : null;
+    }
+
+    /**
+     * @param digest optional digest of file content
+     */
+    public void put(@NotNull File destinationFile, long size, long lastModified, @Nullable byte[] digest) {
+        final String relativePath = getRelativePath(destinationFile);
+        if (relativePath != null) {
+            entries.put(relativePath, new Entry(size, lastModified, digest));
+        }
+    }
+
+    public void remove(@NotNull File destinationFile) {
+        final String relativePath = getRelativePath(destinationFile);
+        if (relativePath != null) {
+            entries.remove(relativePath);
+        }
+    }
+
+    @Nullable
+    private String getRelativePath(@NotNull File file) {
+        final String rootPath = rootDir.getAbsolutePath();
+        final String filePath = file.getAbsolutePath();
+        if (filePath.length() <= rootPath.length() + 1 || !filePath.startsWith(rootPath)
+                || filePath.charAt(rootPath.length()) != File.separatorChar) {
+            return null;
+        }
+        return filePath.substring(rootPath.length() + 1);
+    }
+
+    public static class Entry {
+
+        public final long size;
+
+        public final long lastModified;
+
+        @Nullable
+        public final byte[] digest;
+
+        Entry(long size, long lastModified, @Nullable byte[] digest) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.digest = digest;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package net.maxsmr.copyutil;
+
+import net.maxsmr.copyutil.utils.ContentDigest;
+import net.maxsmr.copyutil.utils.logger.BaseLogger;
+import net.maxsmr.copyutil.utils.logger.holder.BaseLoggerHolder;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Digests of copied files written line by line as they are computed,
+ * in "sha256sum" format: hex digest, two spaces, path relative to root with '/' separators
+ */
+public class DigestManifest implements Closeable {
+
+    private static final BaseLogger logger = BaseLoggerHolder.getInstance().getLogger(DigestManifest.class);
+
+    public static final String MANIFEST_FILE_NAME = ".copyutil.manifest";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    @NotNull
+    private final File rootDir;
+
+    @NotNull
+    private final File manifestFile;
+
+    private Writer writer;
+
+    /**
+     * @param rootDir written paths are relative to it
+     */
+    public DigestManifest(@NotNull File rootDir, @NotNull File manifestFile) {
+        this.rootDir = rootDir;
+        this.manifestFile = manifestFile;
+    }
+
+    @NotNull
+    public File getManifestFile() {
+        return manifestFile;
+    }
+
+    /**
+     * @param append if false, existing manifest is discarded
+     */
+    public synchronized void open(boolean append) throws IOException {
+        if (writer == null) {
+            writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(manifestFile, append), StandardCharsets.UTF_8), BUFFER_SIZE);
+        }
+    }
+
+    public synchronized void write(@NotNull File file, @NotNull byte[] digest) {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.write(ContentDigest.toHexString(digest));
+            writer.write("  ");
+            writer.write(getRelativePath(file));
+            writer.write('\n');
+        } catch (IOException e) {
+            logger.e("Can't write manifest \"" + manifestFile + "\": " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (writer != null) {
+            try {
+                writer.close();
+            } finally {
+                writer = null;
+            }
+        }
+    }
+
+    @NotNull
+    private String getRelativePath(@NotNull File file) {
+        final String rootPath = rootDir.getAbsolutePath();
+        String path = file.getAbsolutePath();
+        if (path.length() > rootPath.length() + 1 && path.startsWith(rootPath) && path.charAt(rootPath.length()) == File.separatorChar) {
+            path = path.substring(rootPath.length() + 1);
+        }
+        return File.separatorChar != '/' ? path.replace(File.separatorChar, '/') : path;
+    }
+}
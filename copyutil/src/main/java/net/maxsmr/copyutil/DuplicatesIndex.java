@@ -0,0 +1,227 @@
+package net.maxsmr.copyutil;
+
+import net.maxsmr.copyutil.utils.ContentDigest;
+import net.maxsmr.copyutil.utils.logger.BaseLogger;
+import net.maxsmr.copyutil.utils.logger.holder.BaseLoggerHolder;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Files copied by current run grouped by size, so that byte-identical file found later
+ * can be linked to already copied one instead of being copied again;
+ * candidates are compared by digest of head and tail first and by digest of whole content then,
+ * both computed lazily only when sizes are equal and cached; digest of whole content computed while copying is reused;
+ * files are read without holding lock of index
+ */
+public class DuplicatesIndex {
+
+    private static final BaseLogger logger = BaseLoggerHolder.getInstance().getLogger(DuplicatesIndex.class);
+
+    private static final String DEFAULT_DIGEST_ALGORITHM = "SHA-256";
+
+    /**
+     * bytes count read from head and from tail of file for partial digest
+     */
+    private static final int PARTIAL_DIGEST_SIZE = 8 * 1024;
+
+    private static final int BUFFER_SIZE = 256 * 1024;
+
+    /**
+     * algorithm of digests of whole content
+     */
+    @NotNull
+    private final String digestAlgorithm;
+
+    /**
+     * digests passed to {@link #add(File, File, byte[])} are computed with {@link #digestAlgorithm}
+     */
+    private final boolean reuseDigests;
+
+    private final Map<Long, List<Entry>> entriesBySize = new HashMap<>();
+
+    private long linkedCount;
+
+    private long savedBytes;
+
+    /**
+     * @param digestAlgorithm algorithm of digests passed to {@link #add(File, File, byte[])} or null;
+     *                        it's used to compare whole content unless it's checksum, which is not reliable for that
+     */
+    public DuplicatesIndex(@Nullable String digestAlgorithm) {
+        reuseDigests = digestAlgorithm != null && !isChecksum(digestAlgorithm) && ContentDigest.create(digestAlgorithm) != null;
+        this.digestAlgorithm = reuseDigests ? digestAlgorithm : DEFAULT_DIGEST_ALGORITHM;
+    }
+
+    /**
+     * @param sourceFile      file that was copied
+     * @param destinationFile copy of it, which is used for comparison and as link target
+     * @param digest          optional digest of content to be reused for its duplicates
+     */
+    public synchronized void add(@NotNull File sourceFile, @NotNull File destinationFile, @Nullable byte[] digest) {
+        final long size = destinationFile.length();
+        if (size <= 0) {
+            return;
+        }
+        List<Entry> entries = entriesBySize.get(size);
+        if (entries == null) {
+            entries = new ArrayList<>(1);
+            entriesBySize.put(size, entries);
+        }
+        final Entry entry = new Entry(sourceFile, destinationFile, digest);
+        if (reuseDigests) {
+            entry.fullDigest = digest;
+        }
+        entries.add(entry);
+    }
+
+    /**
+     * @return earlier copied file with same content as specified one or null
+     */
+    @Nullable
+    public Entry find(@NotNull File sourceFile) {
+        final long size = sourceFile.length();
+        final List<Entry> entries;
+        synchronized (this) {
+            final List<Entry> sameSizeEntries = size > 0 ? entriesBySize.get(size) : null;
+            entries = sameSizeEntries != null ? new ArrayList<>(sameSizeEntries) : null;
+        }
+        if (entries == null) {
+            return null;
+        }
+        final byte[] partialDigest = getPartialDigest(sourceFile, size);
+        if (partialDigest == null) {
+            return null;
+        }
+        byte[] fullDigest = null;
+        for (Entry entry : entries) {
+            if (!Arrays.equals(partialDigest, entry.getPartialDigest(size))) {
+                continue;
+            }
+            if (fullDigest == null) {
+                fullDigest = getFullDigest(sourceFile, digestAlgorithm);
+                if (fullDigest == null) {
+                    return null;
+                }
+            }
+            if (Arrays.equals(fullDigest, entry.getFullDigest(digestAlgorithm))) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * called when destination file was linked to found entry instead of copying
+     */
+    public synchronized void onLinked(@NotNull File destinationFile) {
+        linkedCount++;
+        savedBytes += destinationFile.length();
+    }
+
+    public synchronized long getLinkedCount() {
+        return linkedCount;
+    }
+
+    public synchronized long getSavedBytes() {
+        return savedBytes;
+    }
+
+    private static boolean isChecksum(@NotNull String algorithm) {
+        return algorithm.equalsIgnoreCase(ContentDigest.CRC32C) || algorithm.equalsIgnoreCase(ContentDigest.CRC32)
+                || algorithm.equalsIgnoreCase(ContentDigest.ADLER32);
+    }
+
+    @Nullable
+    private static byte[] getPartialDigest(@NotNull File file, long size) {
+        final ContentDigest digest = ContentDigest.create(DEFAULT_DIGEST_ALGORITHM);
+        if (digest == null) {
+            return null;
+        }
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+            final byte[] buffer = new byte[PARTIAL_DIGEST_SIZE];
+            int length = (int) Math.min(PARTIAL_DIGEST_SIZE, size);
+            randomAccessFile.readFully(buffer, 0, length);
+            digest.update(buffer, 0, length);
+            if (size > PARTIAL_DIGEST_SIZE) {
+                length = (int) Math.min(PARTIAL_DIGEST_SIZE, size - PARTIAL_DIGEST_SIZE);
+                randomAccessFile.seek(size - length);
+                randomAccessFile.readFully(buffer, 0, length);
+                digest.update(buffer, 0, length);
+            }
+            return digest.digest();
+        } catch (IOException e) {
+            logger.e("Can't read \"" + file + "\": " + e.getMessage(), e);
+            return null;
+        }
+    }
+
+    @Nullable
+    private static byte[] getFullDigest(@NotNull File file, @NotNull String algorithm) {
+        final ContentDigest digest = ContentDigest.create(algorithm);
+        if (digest == null) {
+            return null;
+        }
+        try (InputStream in = new FileInputStream(file)) {
+            final byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, read);
+            }
+            return digest.digest();
+        } catch (IOException e) {
+            logger.e("Can't read \"" + file + "\": " + e.getMessage(), e);
+            return null;
+        }
+    }
+
+    public static class Entry {
+
+        @NotNull
+        public final File sourceFile;
+
+        @NotNull
+        public final File destinationFile;
+
+        /**
+         * digest computed while copying, if any
+         */
+        @Nullable
+        public final byte[] digest;
+
+        private byte[] partialDigest;
+
+        private byte[] fullDigest;
+
+        Entry(@NotNull File sourceFile, @NotNull File destinationFile, @Nullable byte[] digest) {
+            this.sourceFile = sourceFile;
+            this.destinationFile = destinationFile;
+            this.digest = digest;
+        }
+
+        private synchronized byte[] getPartialDigest(long size) {
+            if (partialDigest == null) {
+                partialDigest = DuplicatesIndex.getPartialDigest(destinationFile, size);
+            }
+            return partialDigest;
+        }
+
+        private synchronized byte[] getFullDigest(@NotNull String algorithm) {
+            if (fullDigest == null) {
+                fullDigest = DuplicatesIndex.getFullDigest(destinationFile, algorithm);
+            }
+            return fullDigest;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package net.maxsmr.copyutil;
+
+import net.maxsmr.copyutil.utils.logger.BaseLogger;
+import net.maxsmr.copyutil.utils.logger.holder.BaseLoggerHolder;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Removes source directories as soon as their last walked entry is moved or deleted:
+ * counters of remaining entries are filled while walking, so directories are never listed again;
+ * directory is removed only after it was left by walk and only if anything was removed from it,
+ * so directories which were empty initially are kept; then its parent is checked the same way
+ * <p>
+ * entries which weren't reported with {@link #addEntry(File)} are not known,
+ * removing of directory still containing them just fails
+ */
+public class EmptyDirsCleaner {
+
+    private static final BaseLogger logger = BaseLoggerHolder.getInstance().getLogger(EmptyDirsCleaner.class);
+
+    /**
+     * states of entered directories
+     */
+    private final Map<File, Folder> folders = new ConcurrentHashMap<>();
+
+    private final AtomicLong removedCount = new AtomicLong();
+
+    /**
+     * called before entries of specified folder are walked
+     */
+    public void enterFolder(@NotNull File folder) {
+        addEntry(folder);
+        folders.put(folder, new Folder());
+    }
+
+    /**
+     * called for each file or folder found by walk, including ones which won't be handled
+     */
+    public void addEntry(@NotNull File entry) {
+        final File parent = entry.getParentFile();
+        final Folder state = parent != null ? folders.get(parent) : null;
+        if (state != null) {
+            state.remaining.incrementAndGet();
+        }
+    }
+
+    /**
+     * called after all entries of specified folder were walked
+     */
+    public void leaveFolder(@NotNull File folder) {
+        release(folder, false);
+    }
+
+    /**
+     * called when walked file or whole folder was moved or deleted from its directory
+     */
+    public void entryRemoved(@NotNull File entry) {
+        // state of moved folder is not needed anymore
+        folders.remove(entry);
+        final File parent = entry.getParentFile();
+        if (parent != null) {
+            release(parent, true);
+        }
+    }
+
+    /**
+     * called when walked folder was moved whole, states of its subfolders are not needed anymore too
+     */
+    public void folderRemoved(@NotNull File folder, @NotNull Collection<File> subfolders) {
+        for (File subfolder : subfolders) {
+            folders.remove(subfolder);
+        }
+        entryRemoved(folder);
+    }
+
+    public long getRemovedCount() {
+        return removedCount.get();
+    }
+
+    /**
+     * @param isRemoved true if entry of folder was removed, false if folder was left
+     */
+    private void release(@NotNull File folder, boolean isRemoved) {
+        while (folder != null) {
+            final Folder state = folders.get(folder);
+            if (state == null) {
+                return;
+            }
+            if (isRemoved) {
+                state.isChanged = true;
+            }
+            if (state.remaining.decrementAndGet() > 0) {
+                return;
+            }
+            folders.remove(folder);
+            if (!state.isChanged) {
+                return;
+            }
+            if (!folder.delete()) {
+                logger.d("Directory \"" + folder + "\" is not deleted, it may contain not walked entries");
+                return;
+            }
+            logger.i("Empty directory \"" + folder + "\" deleted");
+            removedCount.incrementAndGet();
+            folder = folder.getParentFile();
+            isRemoved = true;
+        }
+    }
+
+    private static class Folder {
+
+        /**
+         * remaining entries, plus one until folder is left
+         */
+        final AtomicInteger remaining = new AtomicInteger(1);
+
+        volatile boolean isChanged;
+    }
+}
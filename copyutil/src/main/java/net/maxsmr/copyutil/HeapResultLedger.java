@@ -0,0 +1,76 @@
+package net.maxsmr.copyutil;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * {@link IResultLedger} with hash lookups by source file and separate queue keeping insertion order
+ */
+public class HeapResultLedger implements IResultLedger {
+
+    private final Map<File, Entry> entries = new ConcurrentHashMap<>();
+
+    private final Queue<File> order = new ConcurrentLinkedQueue<>();
+
+    @Override
+    public boolean contains(@NotNull File sourceFile) {
+        return entries.containsKey(sourceFile.getAbsoluteFile());
+    }
+
+    @Override
+    public void put(@NotNull File sourceFile, @Nullable File destinationFile, @NotNull Status status) {
+        sourceFile = sourceFile.getAbsoluteFile();
+        if (entries.put(sourceFile, new Entry(destinationFile, status)) == null) {
+            order.add(sourceFile);
+        }
+    }
+
+    @Override
+    public int getCount(@NotNull Status status) {
+        int count = 0;
+        for (Entry entry : entries.values()) {
+            if (entry.status == status) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public void forEach(@NotNull Status status, @NotNull IEntryVisitor visitor) {
+        for (File sourceFile : order) {
+            final Entry entry = entries.get(sourceFile);
+            if (entry != null && entry.status == status) {
+                if (!visitor.onEntry(sourceFile, entry.destinationFile)) {
+                    break;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        entries.clear();
+        order.clear();
+    }
+
+    private static class Entry {
+
+        @Nullable
+        final File destinationFile;
+
+        @NotNull
+        final Status status;
+
+        Entry(@Nullable File destinationFile, @NotNull Status status) {
+            this.destinationFile = destinationFile;
+            this.status = status;
+        }
+    }
+}
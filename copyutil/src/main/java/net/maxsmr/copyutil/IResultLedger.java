@@ -0,0 +1,53 @@
+package net.maxsmr.copyutil;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.File;
+
+/**
+ * Results of handled source files, keyed by absolute source file,
+ * so relative and absolute forms of same path are one entry;
+ * implementations must be safe for concurrent writers
+ */
+public interface IResultLedger extends Closeable {
+
+    /**
+     * @return true if result for specified source file was already recorded
+     */
+    boolean contains(@NotNull File sourceFile);
+
+    /**
+     * records result for specified source file, replacing previous one
+     * without changing its position
+     */
+    void put(@NotNull File sourceFile, @Nullable File destinationFile, @NotNull Status status);
+
+    int getCount(@NotNull Status status);
+
+    /**
+     * passes entries with specified status to visitor in order of first recording
+     */
+    void forEach(@NotNull Status status, @NotNull IEntryVisitor visitor);
+
+    enum Status {
+
+        SUCCEEDED,
+
+        FAILED,
+
+        /**
+         * destination was already up to date
+         */
+        SKIPPED
+    }
+
+    interface IEntryVisitor {
+
+        /**
+         * @return false if client code wants to stop visiting
+         */
+        boolean onEntry(@NotNull File sourceFile, @Nullable File destinationFile);
+    }
+}
@@ -0,0 +1,401 @@
+package net.maxsmr.copyutil;
+
+import net.maxsmr.copyutil.utils.JvmUtils;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * {@link IResultLedger} keeping nothing per entry on heap: records are appended to temporary file,
+ * lookups go through open addressing index of record offsets allocated in direct memory;
+ * the index stores only hashes, so key is confirmed by reading the stored source path
+ * <p>
+ * record: flags (status ordinal, {@link #FLAG_REPLACEMENT}), offset of replacing record or -1,
+ * source path length and UTF-8 bytes, destination path length (-1 for null) and UTF-8 bytes
+ */
+public class OffHeapResultLedger implements IResultLedger {
+
+    private static final Charset CHARSET = Charset.forName("UTF-8");
+
+    /**
+     * record was appended to replace destination of earlier one, reported at position of that earlier record
+     */
+    private static final byte FLAG_REPLACEMENT = (byte) 0x80;
+
+    private static final byte STATUS_MASK = 0x7F;
+
+    private static final Status[] STATUSES = Status.values();
+
+    private static final int RECORD_HEADER_SIZE = 1 + 8;
+
+    private static final int NEXT_OFFSET_POSITION = 1;
+
+    private static final int INITIAL_INDEX_CAPACITY = 1 << 16;
+
+    private static final int WRITE_BUFFER_SIZE = 256 * 1024;
+
+    private final File dataFile;
+
+    private final RandomAccessFile randomAccessFile;
+
+    private final FileChannel channel;
+
+    private final ByteBuffer writeBuffer;
+
+    /**
+     * bytes count written to file, records after that are in {@link #writeBuffer}
+     */
+    private long flushedSize;
+
+    /**
+     * offset of latest record for source + 1 per slot, 0 for empty
+     */
+    private ByteBuffer indexOffsets;
+
+    private ByteBuffer indexHashes;
+
+    private int indexCapacity;
+
+    private int indexSize;
+
+    private final int[] counts = new int[STATUSES.length];
+
+    private boolean isClosed;
+
+    /**
+     * @param tempDir directory to create data file in; if null, default temporary directory is used
+     */
+    public OffHeapResultLedger(@Nullable File tempDir) throws IOException {
+        dataFile = File.createTempFile("copyutil", ".ledger", tempDir);
+        dataFile.deleteOnExit();
+        randomAccessFile = new RandomAccessFile(dataFile, "rw");
+        channel = randomAccessFile.getChannel();
+        writeBuffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+        allocateIndex(INITIAL_INDEX_CAPACITY);
+    }
+
+    @Override
+    public synchronized boolean contains(@NotNull File sourceFile) {
+        checkClosed();
+        sourceFile = sourceFile.getAbsoluteFile();
+        try {
+            return find(toBytes(sourceFile), hash(sourceFile)) >= 0;
+        } catch (IOException e) {
+            throw new RuntimeException("Can't read ledger file " + dataFile, e);
+        }
+    }
+
+    @Override
+    public synchronized void put(@NotNull File sourceFile, @Nullable File destinationFile, @NotNull Status status) {
+        checkClosed();
+        sourceFile = sourceFile.getAbsoluteFile();
+        final byte[] sourceBytes = toBytes(sourceFile);
+        final byte[] destinationBytes = destinationFile != null ? toBytes(destinationFile) : null;
+        final int hash = hash(sourceFile);
+        try {
+            final int slot = find(sourceBytes, hash);
+            if (slot < 0) {
+                final long offset = append((byte) status.ordinal(), sourceBytes, destinationBytes);
+                insert(-slot - 1, hash, offset);
+                counts[status.ordinal()]++;
+                return;
+            }
+            final long offset = getOffset(slot);
+            final Record record = read(offset, true);
+            counts[record.status.ordinal()]--;
+            counts[status.ordinal()]++;
+            if (Arrays.equals(record.destinationBytes, destinationBytes)) {
+                writeAt(offset, ByteBuffer.wrap(new byte[]{(byte) ((record.flags & FLAG_REPLACEMENT) | status.ordinal())}));
+            } else {
+                final long newOffset = append((byte) (FLAG_REPLACEMENT | status.ordinal()), sourceBytes, destinationBytes);
+                final ByteBuffer next = ByteBuffer.allocate(8);
+                next.putLong(0, newOffset);
+                writeAt(offset + NEXT_OFFSET_POSITION, next);
+                indexOffsets.putLong(slot * 8, newOffset + 1);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Can't write ledger file " + dataFile, e);
+        }
+    }
+
+    @Override
+    public synchronized int getCount(@NotNull Status status) {
+        return counts[status.ordinal()];
+    }
+
+    /**
+     * streams over data file, so heap usage doesn't depend on entries count
+     */
+    @Override
+    public synchronized void forEach(@NotNull Status status, @NotNull IEntryVisitor visitor) {
+        checkClosed();
+        try {
+            flush();
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(dataFile), WRITE_BUFFER_SIZE))) {
+                long offset = 0;
+                while (offset < flushedSize) {
+                    final Record record = read(in, offset);
+                    offset += record.size;
+                    if ((record.flags & FLAG_REPLACEMENT) != 0) {
+                        continue;
+                    }
+                    Record latest = record;
+                    while (latest.nextOffset >= 0) {
+                        latest = read(latest.nextOffset, true);
+                    }
+                    if (latest.status == status) {
+                        if (!visitor.onEntry(new File(new String(record.sourceBytes, CHARSET)),
+                                latest.destinationBytes != null ? new File(new String(latest.destinationBytes, CHARSET)) : null)) {
+                            break;
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Can't read ledger file " + dataFile, e);
+        }
+    }
+
+    /**
+     * releases index memory and deletes data file
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (isClosed) {
+            return;
+        }
+        isClosed = true;
+        try {
+            channel.close();
+            randomAccessFile.close();
+        } finally {
+            JvmUtils.unmap(writeBuffer);
+            JvmUtils.unmap(indexOffsets);
+            JvmUtils.unmap(indexHashes);
+            indexOffsets = null;
+            indexHashes = null;
+            if (!dataFile.delete()) {
+                dataFile.deleteOnExit();
+            }
+        }
+    }
+
+    private void checkClosed() {
+        if (isClosed) {
+            throw new IllegalStateException(OffHeapResultLedger.class.getSimpleName() + " is closed");
+        }
+    }
+
+    /**
+     * @return slot of record with specified source or (-insertion slot - 1)
+     */
+    private int find(@NotNull byte[] sourceBytes, int hash) throws IOException {
+        final int mask = indexCapacity - 1;
+        int slot = hash & mask;
+        while (true) {
+            final long offset = getOffset(slot);
+            if (offset < 0) {
+                return -slot - 1;
+            }
+            if (indexHashes.getInt(slot * 4) == hash && Arrays.equals(read(offset, false).sourceBytes, sourceBytes)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private void insert(int slot, int hash, long offset) {
+        indexOffsets.putLong(slot * 8, offset + 1);
+        indexHashes.putInt(slot * 4, hash);
+        indexSize++;
+        if (indexSize * 4L >= indexCapacity * 3L) {
+            resizeIndex();
+        }
+    }
+
+    private long getOffset(int slot) {
+        return indexOffsets.getLong(slot * 8) - 1;
+    }
+
+    private void allocateIndex(int capacity) {
+        indexCapacity = capacity;
+        indexOffsets = ByteBuffer.allocateDirect(capacity * 8);
+        indexHashes = ByteBuffer.allocateDirect(capacity * 4);
+    }
+
+    /**
+     * doubles capacity; stored hashes are reused, so records are not read
+     */
+    private void resizeIndex() {
+        if (indexCapacity > Integer.MAX_VALUE / 16) {
+            throw new IllegalStateException("Ledger index is too large: " + indexCapacity);
+        }
+        final ByteBuffer oldOffsets = indexOffsets;
+        final ByteBuffer oldHashes = indexHashes;
+        final int oldCapacity = indexCapacity;
+        allocateIndex(oldCapacity * 2);
+        final int mask = indexCapacity - 1;
+        for (int oldSlot = 0; oldSlot < oldCapacity; oldSlot++) {
+            final long storedOffset = oldOffsets.getLong(oldSlot * 8);
+            if (storedOffset != 0) {
+                final int hash = oldHashes.getInt(oldSlot * 4);
+                int slot = hash & mask;
+                while (indexOffsets.getLong(slot * 8) != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                indexOffsets.putLong(slot * 8, storedOffset);
+                indexHashes.putInt(slot * 4, hash);
+            }
+        }
+        JvmUtils.unmap(oldOffsets);
+        JvmUtils.unmap(oldHashes);
+    }
+
+    /**
+     * @return offset of appended record
+     */
+    private long append(byte flags, @NotNull byte[] sourceBytes, @Nullable byte[] destinationBytes) throws IOException {
+        final int size = RECORD_HEADER_SIZE + 4 + sourceBytes.length + 4 + (destinationBytes != null ? destinationBytes.length : 0);
+        if (size > writeBuffer.remaining()) {
+            flush();
+        }
+        final ByteBuffer target = size <= writeBuffer.remaining() ? writeBuffer : ByteBuffer.allocate(size);
+        final long offset = flushedSize + writeBuffer.position();
+        target.put(flags);
+        target.putLong(-1);
+        target.putInt(sourceBytes.length);
+        target.put(sourceBytes);
+        if (destinationBytes != null) {
+            target.putInt(destinationBytes.length);
+            target.put(destinationBytes);
+        } else {
+            target.putInt(-1);
+        }
+        if (target != writeBuffer) {
+            target.flip();
+            writeAt(offset, target);
+            flushedSize += size;
+        }
+        return offset;
+    }
+
+    private void flush() throws IOException {
+        writeBuffer.flip();
+        while (writeBuffer.hasRemaining()) {
+            flushedSize += channel.write(writeBuffer, flushedSize);
+        }
+        writeBuffer.clear();
+    }
+
+    private void writeAt(long position, @NotNull ByteBuffer buffer) throws IOException {
+        if (position >= flushedSize) {
+            flush();
+        }
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    @NotNull
+    private Record read(long offset, boolean readDestination) throws IOException {
+        if (offset >= flushedSize) {
+            flush();
+        }
+        final ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE + 4);
+        readFully(header, offset);
+        final byte flags = header.get(0);
+        final long nextOffset = header.getLong(NEXT_OFFSET_POSITION);
+        final byte[] sourceBytes = new byte[header.getInt(RECORD_HEADER_SIZE)];
+        long position = offset + header.capacity();
+        readFully(ByteBuffer.wrap(sourceBytes), position);
+        position += sourceBytes.length;
+        byte[] destinationBytes = null;
+        if (readDestination) {
+            final ByteBuffer length = ByteBuffer.allocate(4);
+            readFully(length, position);
+            final int destinationLength = length.getInt(0);
+            if (destinationLength >= 0) {
+                destinationBytes = new byte[destinationLength];
+                readFully(ByteBuffer.wrap(destinationBytes), position + 4);
+            }
+        }
+        return new Record(flags, nextOffset, sourceBytes, destinationBytes);
+    }
+
+    @NotNull
+    private static Record read(@NotNull DataInputStream in, long offset) throws IOException {
+        final byte flags = in.readByte();
+        final long nextOffset = in.readLong();
+        final byte[] sourceBytes = new byte[in.readInt()];
+        in.readFully(sourceBytes);
+        final int destinationLength = in.readInt();
+        byte[] destinationBytes = null;
+        if (destinationLength >= 0) {
+            destinationBytes = new byte[destinationLength];
+            in.readFully(destinationBytes);
+        }
+        return new Record(flags, nextOffset, sourceBytes, destinationBytes);
+    }
+
+    private void readFully(@NotNull ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            final int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new EOFException("Unexpected end of ledger file " + dataFile + " at " + position);
+            }
+            position += read;
+        }
+    }
+
+    @NotNull
+    private static byte[] toBytes(@NotNull File file) {
+        return file.getPath().getBytes(CHARSET);
+    }
+
+    /**
+     * consistent with {@link File#equals(Object)} on case-sensitive file systems
+     */
+    private static int hash(@NotNull File file) {
+        final int h = file.getPath().hashCode();
+        return (h ^ (h >>> 16)) * 0x9E3779B9;
+    }
+
+    private static class Record {
+
+        final byte flags;
+
+        @NotNull
+        final Status status;
+
+        final long nextOffset;
+
+        @NotNull
+        final byte[] sourceBytes;
+
+        @Nullable
+        final byte[] destinationBytes;
+
+        final int size;
+
+        Record(byte flags, long nextOffset, @NotNull byte[] sourceBytes, @Nullable byte[] destinationBytes) {
+            this.flags = flags;
+            this.status = STATUSES[flags & STATUS_MASK];
+            this.nextOffset = nextOffset;
+            this.sourceBytes = sourceBytes;
+            this.destinationBytes = destinationBytes;
+            this.size = RECORD_HEADER_SIZE + 4 + sourceBytes.length + 4 + (destinationBytes != null ? destinationBytes.length : 0);
+        }
+    }
+}
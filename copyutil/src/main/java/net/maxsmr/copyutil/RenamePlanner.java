@@ -0,0 +1,376 @@
+package net.maxsmr.copyutil;
+
+import net.maxsmr.copyutil.utils.FileHelper;
+import net.maxsmr.copyutil.utils.logger.BaseLogger;
+import net.maxsmr.copyutil.utils.logger.holder.BaseLoggerHolder;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Splits moving of source directory into moves of whole subdirectories, which need one rename each,
+ * and moves of separate files: subdirectory is moved whole if all its entries and their destinations are accepted by filter
+ * and its destination doesn't exist yet; walked root itself is never moved whole
+ * <p>
+ * file systems of source folders and their destinations are compared once per folder,
+ * so files which can't be renamed because of being on other device than destination are known in advance
+ */
+public class RenamePlanner {
+
+    private static final BaseLogger logger = BaseLoggerHolder.getInstance().getLogger(RenamePlanner.class);
+
+    /**
+     * device ids are available, otherwise file stores are compared
+     */
+    private static final boolean HAS_UNIX_ATTRIBUTES = FileSystems.getDefault().supportedFileAttributeViews().contains("unix");
+
+    @NotNull
+    private final File sourceRoot;
+
+    @NotNull
+    private final File destinationRoot;
+
+    @NotNull
+    private final IEntryFilter filter;
+
+    @Nullable
+    private final EmptyDirsCleaner cleaner;
+
+    private final List<DirectoryMove> directoryMoves = Collections.synchronizedList(new ArrayList<>());
+
+    private final List<File> fileMoves = Collections.synchronizedList(new ArrayList<>());
+
+    private final List<File> fileCopies = Collections.synchronizedList(new ArrayList<>());
+
+    /**
+     * states of folders being walked
+     */
+    private final Map<File, FolderState> folderStates = new ConcurrentHashMap<>();
+
+    /**
+     * @param sourceRoot      directory to move content of
+     * @param destinationRoot directory to move content of source root into
+     * @param cleaner         if not null, it's filled with walked entries
+     */
+    public RenamePlanner(@NotNull File sourceRoot, @NotNull File destinationRoot, @NotNull IEntryFilter filter, @Nullable EmptyDirsCleaner cleaner) {
+        this.sourceRoot = sourceRoot;
+        this.destinationRoot = destinationRoot;
+        this.filter = filter;
+        this.cleaner = cleaner;
+    }
+
+    /**
+     * walks source root once; result is available from {@link #getDirectoryMoves()}, {@link #getFileMoves()}
+     * and {@link #getFileCopies()}
+     *
+     * @param pool if not null, directories are listed concurrently
+     * @return false if walk was interrupted
+     */
+    public boolean plan(@Nullable ForkJoinPool pool) {
+        directoryMoves.clear();
+        fileMoves.clear();
+        fileCopies.clear();
+        folderStates.clear();
+
+        // destination root may not exist yet, so it will be created on device of its existing parent
+        File existingDestination = destinationRoot.getAbsoluteFile();
+        Object destinationRootDevice = getDevice(existingDestination);
+        while (destinationRootDevice == null && existingDestination.getParentFile() != null) {
+            existingDestination = existingDestination.getParentFile();
+            destinationRootDevice = getDevice(existingDestination);
+        }
+        final Object sourceRootDevice = getDevice(sourceRoot);
+        if (isOtherDevice(sourceRootDevice, destinationRootDevice)) {
+            logger.i("Source \"" + sourceRoot + "\" and destination \"" + destinationRoot + "\" are on different file systems, files will be copied");
+        }
+        final Object rootDestinationDevice = destinationRootDevice;
+
+        final FileHelper.IWalkNotifier notifier = new FileHelper.IWalkNotifier() {
+
+            @NotNull
+            @Override
+            public FileVisitResult onEnterFolder(@NotNull File folder, int currentLevel) {
+                final FolderState parentState = currentLevel > 0 ? folderStates.get(folder.getParentFile()) : null;
+                if (!filter.acceptFolder(folder)) {
+                    if (parentState != null) {
+                        parentState.setNotMovable();
+                    }
+                    if (cleaner != null) {
+                        cleaner.addEntry(folder);
+                    }
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                if (cleaner != null) {
+                    cleaner.enterFolder(folder);
+                }
+                final File destinationDir = getDestinationFile(folder);
+                // destination of content of missing directory is missing too
+                Object destinationDevice = parentState == null || parentState.destinationExists ? getDevice(destinationDir) : null;
+                final boolean destinationExists = destinationDevice != null;
+                if (!destinationExists) {
+                    destinationDevice = parentState != null ? parentState.destinationDevice : rootDestinationDevice;
+                }
+                final Object sourceDevice = getDevice(folder);
+                final FolderState state = new FolderState(folder, destinationDir, parentState, destinationExists,
+                        destinationDevice, isOtherDevice(sourceDevice, destinationDevice));
+                if (state.isOtherDevice && parentState != null && !parentState.isOtherDevice) {
+                    logger.i("Directory \"" + folder + "\" is on other file system than destination \"" + destinationDir + "\", its files will be copied");
+                }
+                if (state.isMovable() && !filter.acceptDestination(destinationDir)) {
+                    state.setNotMovable();
+                }
+                folderStates.put(folder, state);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @NotNull
+            @Override
+            public FileVisitResult onFile(@NotNull File file, int currentLevel) {
+                final FolderState state = folderStates.get(file.getParentFile());
+                if (cleaner != null) {
+                    cleaner.addEntry(file);
+                }
+                if (filter.acceptFile(file)) {
+                    if (state != null) {
+                        state.addFile(file);
+                        if (state.isMovable() && !filter.acceptDestination(getDestinationFile(file))) {
+                            state.setNotMovable();
+                        }
+                    } else if (isOtherDevice(getDevice(file), rootDestinationDevice)) {
+                        fileCopies.add(file);
+                    } else {
+                        fileMoves.add(file);
+                    }
+                } else if (state != null) {
+                    state.setNotMovable();
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @NotNull
+            @Override
+            public FileVisitResult onLeaveFolder(@NotNull File folder, int currentLevel) {
+                final FolderState state = folderStates.remove(folder);
+                if (state != null) {
+                    state.complete();
+                }
+                if (cleaner != null) {
+                    cleaner.leaveFolder(folder);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        };
+
+        return pool != null ?
+                FileHelper.walkParallel(sourceRoot, notifier, FileHelper.DEPTH_UNLIMITED, pool) :
+                FileHelper.walk(sourceRoot, null, notifier, FileHelper.DEPTH_UNLIMITED);
+    }
+
+    /**
+     * @return subdirectories to be moved whole, not nested in each other
+     */
+    @NotNull
+    public List<DirectoryMove> getDirectoryMoves() {
+        return new ArrayList<>(directoryMoves);
+    }
+
+    /**
+     * @return files to be moved separately
+     */
+    @NotNull
+    public List<File> getFileMoves() {
+        return new ArrayList<>(fileMoves);
+    }
+
+    /**
+     * @return files on other file system than their destinations, which can't be renamed
+     */
+    @NotNull
+    public List<File> getFileCopies() {
+        return new ArrayList<>(fileCopies);
+    }
+
+    @NotNull
+    public File getDestinationFile(@NotNull File sourceFile) {
+        final String rootPath = sourceRoot.getAbsolutePath();
+        final String path = sourceFile.getAbsolutePath();
+        return path.length() > rootPath.length() && path.startsWith(rootPath) ?
+                new File(destinationRoot, path.substring(rootPath.length())) : destinationRoot;
+    }
+
+    /**
+     * @return id of device of existing file, its file store if ids are not available, null if file doesn't exist
+     */
+    @Nullable
+    private static Object getDevice(@NotNull File file) {
+        final Path path = file.toPath();
+        try {
+            if (HAS_UNIX_ATTRIBUTES) {
+                return Files.getAttribute(path, "unix:dev", LinkOption.NOFOLLOW_LINKS);
+            }
+            return Files.getFileStore(path);
+        } catch (IOException | UnsupportedOperationException | IllegalArgumentException | SecurityException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return false if any of devices is unknown, so renaming should be tried
+     */
+    private static boolean isOtherDevice(@Nullable Object device, @Nullable Object anotherDevice) {
+        return device != null && anotherDevice != null && !device.equals(anotherDevice);
+    }
+
+    public interface IEntryFilter {
+
+        /**
+         * @return false if folder shouldn't be walked, it stays in source then
+         */
+        boolean acceptFolder(@NotNull File folder);
+
+        /**
+         * @return false if file shouldn't be moved, it stays in source then
+         */
+        boolean acceptFile(@NotNull File file);
+
+        /**
+         * @return false if nothing should be moved to specified destination file or directory,
+         * containing subdirectory is not moved whole then
+         */
+        boolean acceptDestination(@NotNull File destination);
+    }
+
+    public static class DirectoryMove {
+
+        @NotNull
+        public final File sourceDir;
+
+        @NotNull
+        public final File destinationDir;
+
+        /**
+         * all files of moved subtree
+         */
+        @NotNull
+        public final List<File> files;
+
+        /**
+         * all folders of moved subtree except source directory itself
+         */
+        @NotNull
+        public final List<File> folders;
+
+        DirectoryMove(@NotNull File sourceDir, @NotNull File destinationDir, @NotNull List<File> files, @NotNull List<File> folders) {
+            this.sourceDir = sourceDir;
+            this.destinationDir = destinationDir;
+            this.files = files;
+            this.folders = folders;
+        }
+    }
+
+    private class FolderState {
+
+        @NotNull
+        final File folder;
+
+        @NotNull
+        final File destinationDir;
+
+        @Nullable
+        final FolderState parent;
+
+        final boolean destinationExists;
+
+        /**
+         * device of destination or, if it doesn't exist, of its nearest existing parent
+         */
+        @Nullable
+        final Object destinationDevice;
+
+        final boolean isOtherDevice;
+
+        private boolean isMovable;
+
+        private final List<File> files = new ArrayList<>();
+
+        /**
+         * movable subdirectories, which are moved with this folder if it's movable too
+         */
+        private final List<DirectoryMove> subdirectories = new ArrayList<>();
+
+        FolderState(@NotNull File folder, @NotNull File destinationDir, @Nullable FolderState parent, boolean destinationExists,
+                    @Nullable Object destinationDevice, boolean isOtherDevice) {
+            this.folder = folder;
+            this.destinationDir = destinationDir;
+            this.parent = parent;
+            this.destinationExists = destinationExists;
+            this.destinationDevice = destinationDevice;
+            this.isOtherDevice = isOtherDevice;
+            this.isMovable = parent != null && !destinationExists && !isOtherDevice;
+        }
+
+        synchronized void addFile(@NotNull File file) {
+            files.add(file);
+        }
+
+        synchronized boolean isMovable() {
+            return isMovable;
+        }
+
+        synchronized void setNotMovable() {
+            isMovable = false;
+        }
+
+        /**
+         * called after all entries were walked
+         */
+        void complete() {
+            final boolean isMovable;
+            final List<File> files;
+            final List<DirectoryMove> subdirectories;
+            synchronized (this) {
+                isMovable = this.isMovable;
+                files = this.files;
+                subdirectories = this.subdirectories;
+            }
+            if (isMovable) {
+                final List<File> allFiles = new ArrayList<>(files);
+                final List<File> allFolders = new ArrayList<>();
+                for (DirectoryMove subdirectory : subdirectories) {
+                    allFiles.addAll(subdirectory.files);
+                    allFolders.add(subdirectory.sourceDir);
+                    allFolders.addAll(subdirectory.folders);
+                }
+                parent.onSubdirectoryCompleted(new DirectoryMove(folder, destinationDir, allFiles, allFolders));
+            } else {
+                if (parent != null) {
+                    parent.setNotMovable();
+                }
+                directoryMoves.addAll(subdirectories);
+                if (isOtherDevice) {
+                    fileCopies.addAll(files);
+                } else {
+                    fileMoves.addAll(files);
+                }
+            }
+        }
+
+        private synchronized void onSubdirectoryCompleted(@NotNull DirectoryMove move) {
+            subdirectories.add(move);
+        }
+    }
+}
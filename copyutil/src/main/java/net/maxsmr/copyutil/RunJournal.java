@@ -0,0 +1,206 @@
+package net.maxsmr.copyutil;
+
+import net.maxsmr.copyutil.utils.logger.BaseLogger;
+import net.maxsmr.copyutil.utils.logger.holder.BaseLoggerHolder;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/**
+ * Append-only journal of source files completed by current run, stored in destination root:
+ * after interruption next run can skip them without accessing them;
+ * records are synced to disk in batches, so few last ones may be lost on crash
+ * <p>
+ * format: magic, version, then for each record: source path, destination path
+ */
+public class RunJournal implements Closeable {
+
+    private static final BaseLogger logger = BaseLoggerHolder.getInstance().getLogger(RunJournal.class);
+
+    public static final String JOURNAL_FILE_NAME = ".copyutil.journal";
+
+    private static final int MAGIC = 0x43554A4E;
+
+    private static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 8;
+
+    /**
+     * records count after which journal is synced to disk
+     */
+    private static final int SYNC_RECORDS_COUNT = 1000;
+
+    /**
+     * time in ms after which journal is synced to disk on next record
+     */
+    private static final long SYNC_INTERVAL = 1000;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    @NotNull
+    private final File journalFile;
+
+    private FileOutputStream fileOutputStream;
+
+    private DataOutputStream out;
+
+    private int recordsSinceSync;
+
+    private long lastSyncTime;
+
+    public RunJournal(@NotNull File rootDir) {
+        this.journalFile = new File(rootDir, JOURNAL_FILE_NAME);
+    }
+
+    @NotNull
+    public File getJournalFile() {
+        return journalFile;
+    }
+
+    /**
+     * passes records of existing journal to visitor; incomplete last record, left by crash, is cut off
+     *
+     * @return count of read records
+     */
+    public int load(@NotNull IResultLedger.IEntryVisitor visitor) {
+        if (!journalFile.isFile()) {
+            return 0;
+        }
+        int count = 0;
+        long validLength = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(journalFile), BUFFER_SIZE))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a journal file or unsupported version");
+            }
+            validLength = HEADER_SIZE;
+            while (true) {
+                final String sourcePath;
+                final String destinationPath;
+                try {
+                    sourcePath = in.readUTF();
+                    destinationPath = in.readUTF();
+                } catch (EOFException e) {
+                    break;
+                }
+                validLength += getRecordSize(sourcePath, destinationPath);
+                count++;
+                if (!visitor.onEntry(new File(sourcePath), new File(destinationPath))) {
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            logger.e("Can't read journal \"" + journalFile + "\": " + e.getMessage(), e);
+        }
+        if (validLength < journalFile.length()) {
+            try (RandomAccessFile raf = new RandomAccessFile(journalFile, "rw")) {
+                raf.setLength(validLength);
+            } catch (IOException e) {
+                logger.e("Can't truncate journal \"" + journalFile + "\": " + e.getMessage(), e);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @param append if false, existing journal is discarded
+     */
+    public synchronized void open(boolean append) throws IOException {
+        if (out != null) {
+            return;
+        }
+        final boolean writeHeader = !append || journalFile.length() < HEADER_SIZE;
+        fileOutputStream = new FileOutputStream(journalFile, !writeHeader);
+        out = new DataOutputStream(new BufferedOutputStream(fileOutputStream, BUFFER_SIZE));
+        if (writeHeader) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            sync();
+        }
+        lastSyncTime = System.currentTimeMillis();
+    }
+
+    /**
+     * records that specified source file was completely handled
+     */
+    public synchronized void append(@NotNull File sourceFile, @NotNull File destinationFile) {
+        if (out == null) {
+            return;
+        }
+        try {
+            out.writeUTF(sourceFile.getAbsolutePath());
+            out.writeUTF(destinationFile.getAbsolutePath());
+            recordsSinceSync++;
+            if (recordsSinceSync >= SYNC_RECORDS_COUNT || System.currentTimeMillis() - lastSyncTime >= SYNC_INTERVAL) {
+                sync();
+            }
+        } catch (IOException e) {
+            logger.e("Can't write journal \"" + journalFile + "\": " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (out == null) {
+            return;
+        }
+        try {
+            sync();
+        } finally {
+            out.close();
+            out = null;
+            fileOutputStream = null;
+        }
+    }
+
+    /**
+     * closes and deletes journal, when run is completed
+     */
+    public boolean delete() {
+        try {
+            close();
+        } catch (IOException e) {
+            logger.e("an IOException occurred during close()", e);
+        }
+        return !journalFile.exists() || journalFile.delete();
+    }
+
+    private void sync() throws IOException {
+        out.flush();
+        fileOutputStream.getChannel().force(false);
+        recordsSinceSync = 0;
+        lastSyncTime = System.currentTimeMillis();
+    }
+
+    /**
+     * @return bytes count of record as written by {@link DataOutputStream#writeUTF(String)}
+     */
+    private static long getRecordSize(@NotNull String sourcePath, @NotNull String destinationPath) {
+        return 2 + getUtfLength(sourcePath) + 2 + getUtfLength(destinationPath);
+    }
+
+    private static int getUtfLength(@NotNull String s) {
+        int length = 0;
+        for (int i = 0; i < s.length(); i++) {
+            final char c = s.charAt(i);
+            if (c >= 0x0001 && c <= 0x007F) {
+                length++;
+            } else if (c > 0x07FF) {
+                length += 3;
+            } else {
+                length += 2;
+            }
+        }
+        return length;
+    }
+}
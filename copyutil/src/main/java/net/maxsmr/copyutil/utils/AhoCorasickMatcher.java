@@ -0,0 +1,239 @@
+package net.maxsmr.copyutil.utils;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+
+/**
+ * Finds any of patterns, compiled once into Aho-Corasick automaton,
+ * as substring of text in single pass without allocation
+ */
+public class AhoCorasickMatcher {
+
+    /**
+     * count of recent directories which automaton states are remembered by each thread,
+     * see {@link #findInPath(String)}
+     */
+    private static final int PATH_CACHE_SIZE = 4;
+
+    private static final int ROOT_STATE = 0;
+
+    private final boolean ignoreCase;
+
+    @NotNull
+    private final String[] patterns;
+
+    /**
+     * sorted transition chars per state
+     */
+    @NotNull
+    private final char[][] transitionChars;
+
+    @NotNull
+    private final int[][] transitionTargets;
+
+    @NotNull
+    private final int[] failures;
+
+    /**
+     * index of pattern ending in state or in one of its failure states, -1 if none
+     */
+    @NotNull
+    private final int[] outputs;
+
+    private final ThreadLocal<PathState[]> pathCache = new ThreadLocal<PathState[]>() {
+        @Override
+        protected PathState[] initialValue() {
+            final PathState[] states = new PathState[PATH_CACHE_SIZE];
+            for (int i = 0; i < states.length; i++) {
+                states[i] = new PathState();
+            }
+            return states;
+        }
+    };
+
+    /**
+     * @param patterns empty and null ones are ignored
+     */
+    public AhoCorasickMatcher(@Nullable Collection<String> patterns, boolean ignoreCase) {
+        this.ignoreCase = ignoreCase;
+
+        final List<String> patternsList = new ArrayList<>();
+        final List<TreeMap<Character, Integer>> transitions = new ArrayList<>();
+        final List<Integer> ownOutputs = new ArrayList<>();
+        transitions.add(new TreeMap<>());
+        ownOutputs.add(-1);
+
+        if (patterns != null) {
+            for (String pattern : patterns) {
+                if (TextUtils.isEmpty(pattern)) {
+                    continue;
+                }
+                int state = ROOT_STATE;
+                for (int i = 0; i < pattern.length(); i++) {
+                    final char c = fold(pattern.charAt(i));
+                    Integer next = transitions.get(state).get(c);
+                    if (next == null) {
+                        next = transitions.size();
+                        transitions.add(new TreeMap<>());
+                        ownOutputs.add(-1);
+                        transitions.get(state).put(c, next);
+                    }
+                    state = next;
+                }
+                if (ownOutputs.get(state) < 0) {
+                    ownOutputs.set(state, patternsList.size());
+                }
+                patternsList.add(pattern);
+            }
+        }
+
+        final int statesCount = transitions.size();
+        this.patterns = patternsList.toArray(new String[patternsList.size()]);
+        transitionChars = new char[statesCount][];
+        transitionTargets = new int[statesCount][];
+        failures = new int[statesCount];
+        outputs = new int[statesCount];
+
+        for (int state = 0; state < statesCount; state++) {
+            final TreeMap<Character, Integer> stateTransitions = transitions.get(state);
+            transitionChars[state] = new char[stateTransitions.size()];
+            transitionTargets[state] = new int[stateTransitions.size()];
+            int i = 0;
+            for (Map.Entry<Character, Integer> e : stateTransitions.entrySet()) {
+                transitionChars[state][i] = e.getKey();
+                transitionTargets[state][i] = e.getValue();
+                i++;
+            }
+            outputs[state] = ownOutputs.get(state);
+        }
+
+        // breadth first, so failure state is always computed before
+        final Queue<Integer> queue = new LinkedList<>();
+        for (int target : transitionTargets[ROOT_STATE]) {
+            failures[target] = ROOT_STATE;
+            queue.add(target);
+        }
+        while (!queue.isEmpty()) {
+            final int state = queue.poll();
+            for (int i = 0; i < transitionChars[state].length; i++) {
+                final char c = transitionChars[state][i];
+                final int target = transitionTargets[state][i];
+                int failure = failures[state];
+                while (failure != ROOT_STATE && findTransition(failure, c) < 0) {
+                    failure = failures[failure];
+                }
+                final int failureTarget = findTransition(failure, c);
+                failures[target] = failureTarget >= 0 ? failureTarget : ROOT_STATE;
+                if (outputs[target] < 0) {
+                    outputs[target] = outputs[failures[target]];
+                }
+                queue.add(target);
+            }
+        }
+    }
+
+    public boolean isEmpty() {
+        return patterns.length == 0;
+    }
+
+    /**
+     * @return first of patterns found in text or null
+     */
+    @Nullable
+    public String find(@Nullable CharSequence text) {
+        if (text == null || isEmpty()) {
+            return null;
+        }
+        final int result = advance(ROOT_STATE, text, 0, text.length());
+        return result < 0 ? patterns[-result - 1] : null;
+    }
+
+    /**
+     * Same as {@link #find(CharSequence)}, but automaton state after parent directory part
+     * of recently checked paths is remembered, so for files of same directory only names are scanned
+     *
+     * @param path absolute path with {@link File#separatorChar}
+     */
+    @Nullable
+    public String findInPath(@Nullable String path) {
+        if (path == null || isEmpty()) {
+            return null;
+        }
+        final int parentLength = path.lastIndexOf(File.separatorChar);
+        if (parentLength <= 0) {
+            return find(path);
+        }
+
+        final PathState[] cache = pathCache.get();
+        PathState parentState = null;
+        for (PathState cached : cache) {
+            if (cached.parentLength == parentLength && cached.path != null
+                    && path.regionMatches(0, cached.path, 0, parentLength)) {
+                parentState = cached;
+                break;
+            }
+        }
+        if (parentState == null) {
+            parentState = cache[0];
+            System.arraycopy(cache, 1, cache, 0, cache.length - 1);
+            cache[cache.length - 1] = parentState;
+            parentState.path = path;
+            parentState.parentLength = parentLength;
+            parentState.state = advance(ROOT_STATE, path, 0, parentLength);
+        }
+
+        final int result = parentState.state < 0 ? parentState.state : advance(parentState.state, path, parentLength, path.length());
+        return result < 0 ? patterns[-result - 1] : null;
+    }
+
+    /**
+     * @return state after scanning specified range or (-pattern index - 1) if pattern was found
+     */
+    private int advance(int state, @NotNull CharSequence text, int start, int end) {
+        for (int i = start; i < end; i++) {
+            final char c = fold(text.charAt(i));
+            int next = findTransition(state, c);
+            while (next < 0 && state != ROOT_STATE) {
+                state = failures[state];
+                next = findTransition(state, c);
+            }
+            state = next >= 0 ? next : ROOT_STATE;
+            if (outputs[state] >= 0) {
+                return -outputs[state] - 1;
+            }
+        }
+        return state;
+    }
+
+    private int findTransition(int state, char c) {
+        final int index = Arrays.binarySearch(transitionChars[state], c);
+        return index >= 0 ? transitionTargets[state][index] : -1;
+    }
+
+    private char fold(char c) {
+        return ignoreCase ? Character.toLowerCase(c) : c;
+    }
+
+    private static class PathState {
+
+        /**
+         * path which parent part was scanned
+         */
+        @Nullable
+        String path;
+
+        int parentLength;
+
+        int state;
+    }
+}
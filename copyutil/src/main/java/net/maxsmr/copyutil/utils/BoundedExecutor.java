@@ -0,0 +1,75 @@
+package net.maxsmr.copyutil.utils;
+
+import net.maxsmr.copyutil.utils.logger.BaseLogger;
+import net.maxsmr.copyutil.utils.logger.holder.BaseLoggerHolder;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Runs tasks on wrapped {@link Executor}, blocking submitter
+ * while count of submitted but not finished tasks reaches the limit
+ */
+public class BoundedExecutor {
+
+    private final static BaseLogger logger = BaseLoggerHolder.getInstance().getLogger(BoundedExecutor.class);
+
+    private final Executor executor;
+
+    private final int maxTasksInFlight;
+
+    private final Semaphore semaphore;
+
+    public BoundedExecutor(@NotNull Executor executor, int maxTasksInFlight) {
+        if (maxTasksInFlight <= 0) {
+            throw new IllegalArgumentException("Incorrect max tasks in flight: " + maxTasksInFlight);
+        }
+        this.executor = executor;
+        this.maxTasksInFlight = maxTasksInFlight;
+        this.semaphore = new Semaphore(maxTasksInFlight);
+    }
+
+    public int getMaxTasksInFlight() {
+        return maxTasksInFlight;
+    }
+
+    /**
+     * @return false if submitting thread was interrupted or task was rejected
+     */
+    public boolean execute(@NotNull final Runnable task) {
+        try {
+            semaphore.acquire();
+        } catch (InterruptedException e) {
+            logger.e("an InterruptedException occurred during acquire()", e);
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    logger.e("a RuntimeException occurred during run()", e);
+                } finally {
+                    semaphore.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            logger.e("a RejectedExecutionException occurred during execute()", e);
+            semaphore.release();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * blocks until all submitted tasks are finished
+     */
+    public void awaitCompletion() {
+        semaphore.acquireUninterruptibly(maxTasksInFlight);
+        semaphore.release(maxTasksInFlight);
+    }
+}
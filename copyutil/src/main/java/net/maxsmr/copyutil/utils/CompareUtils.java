@@ -1,6 +1,8 @@
 package net.maxsmr.copyutil.utils;
 
 
+import org.jetbrains.annotations.NotNull;
+
 import java.util.Arrays;
 import java.util.Date;
 import java.util.LinkedHashSet;
@@ -86,88 +88,174 @@ public final class CompareUtils {
 
 
     public static boolean stringMatches(CharSequence oneS, CharSequence anotherS, int matchFlags, String... separators) {
+        return compile(anotherS, matchFlags, separators).matches(oneS);
+    }
 
-        if (oneS == null) {
-            oneS = "";
-        }
+    /**
+     * Compiles pattern with flags once, so that matching many strings
+     * doesn't evaluate flags, lowercase or split strings on each call
+     *
+     * @param separators chars separating words for {@link MatchStringOption#AUTO} and {@link MatchStringOption#AUTO_IGNORE_CASE}; space if not specified
+     */
+    @NotNull
+    public static StringMatcher compile(CharSequence pattern, int matchFlags, String... separators) {
+        return new StringMatcher(pattern, matchFlags, separators);
+    }
 
-        if (anotherS == null) {
-            anotherS = "";
+    /**
+     * Result of {@link #compile(CharSequence, int, String...)}; immutable, so can be shared between threads
+     */
+    public static final class StringMatcher {
+
+        @NotNull
+        private final String pattern;
+
+        /**
+         * pattern for words in {@link MatchStringOption#AUTO} mode: trimmed if case is ignored
+         */
+        @NotNull
+        private final String autoPattern;
+
+        private final boolean equals;
+        private final boolean equalsIgnoreCase;
+        private final boolean contains;
+        private final boolean containsIgnoreCase;
+        private final boolean startsWith;
+        private final boolean startsWithIgnoreCase;
+        private final boolean endsWith;
+        private final boolean endsWithIgnoreCase;
+
+        private final boolean auto;
+        private final boolean autoIgnoreCase;
+
+        /**
+         * true if any option except of auto ones is set
+         */
+        private final boolean hasWordOptions;
+
+        @NotNull
+        private final char[] separatorChars;
+
+        private StringMatcher(CharSequence pattern, int matchFlags, String... separators) {
+            this.pattern = pattern != null ? pattern.toString() : "";
+            equals = MatchStringOption.contains(EQUALS, matchFlags);
+            equalsIgnoreCase = MatchStringOption.contains(EQUALS_IGNORE_CASE, matchFlags);
+            contains = MatchStringOption.contains(CONTAINS, matchFlags);
+            containsIgnoreCase = MatchStringOption.contains(CONTAINS_IGNORE_CASE, matchFlags);
+            startsWith = MatchStringOption.contains(STARTS_WITH, matchFlags);
+            startsWithIgnoreCase = MatchStringOption.contains(STARTS_WITH_IGNORE_CASE, matchFlags);
+            endsWith = MatchStringOption.contains(END_WITH, matchFlags);
+            endsWithIgnoreCase = MatchStringOption.contains(END_WITH_IGNORE_CASE, matchFlags);
+            autoIgnoreCase = MatchStringOption.contains(AUTO_IGNORE_CASE, matchFlags);
+            auto = autoIgnoreCase || MatchStringOption.contains(AUTO, matchFlags);
+            hasWordOptions = equals || equalsIgnoreCase || contains || containsIgnoreCase
+                    || startsWith || startsWithIgnoreCase || endsWith || endsWithIgnoreCase;
+            autoPattern = autoIgnoreCase ? this.pattern.trim() : this.pattern;
+            final String separatorsStr = separators != null && separators.length > 0 ? TextUtils.join("", separators) : " ";
+            separatorChars = separatorsStr.toCharArray();
         }
 
-        String one = oneS.toString();
-        String another = anotherS.toString();
-
-        boolean match = false;
-
-        if (CompareUtils.MatchStringOption.contains(EQUALS, matchFlags)) {
-            if (one.equals(another)) {
-                match = true;
+        public boolean matches(CharSequence text) {
+            final String one = text != null ? text.toString() : "";
+            if (matches(one, 0, one.length(), pattern, false)) {
+                return true;
             }
-        }
-        if (!match && CompareUtils.MatchStringOption.contains(EQUALS_IGNORE_CASE, matchFlags)) {
-            if (one.equalsIgnoreCase(another)) {
-                match = true;
+            if (!auto || one.isEmpty()) {
+                return false;
             }
-        }
-        if (!match && CompareUtils.MatchStringOption.contains(CONTAINS, matchFlags)) {
-            if (one.contains(another)) {
-                match = true;
+            int start = 0;
+            int end = one.length();
+            if (autoIgnoreCase) {
+                while (start < end && one.charAt(start) <= ' ') {
+                    start++;
+                }
+                while (end > start && one.charAt(end - 1) <= ' ') {
+                    end--;
+                }
             }
-        }
-        if (!match && CompareUtils.MatchStringOption.contains(CONTAINS_IGNORE_CASE, matchFlags)) {
-            if (one.toLowerCase().contains(another.toLowerCase())) {
-                match = true;
+            if (regionEquals(one, start, end, autoPattern, autoIgnoreCase)) {
+                return true;
             }
-        }
-        if (!match && CompareUtils.MatchStringOption.contains(STARTS_WITH, matchFlags)) {
-            if (one.startsWith(another)) {
-                match = true;
+            int wordStart = start;
+            while (wordStart < end && isSeparator(one.charAt(wordStart))) {
+                wordStart++;
             }
-        }
-        if (!match && CompareUtils.MatchStringOption.contains(STARTS_WITH_IGNORE_CASE, matchFlags)) {
-            if (one.toLowerCase().startsWith(another.toLowerCase())) {
-                match = true;
+            if (wordStart == end && end > start) {
+                // separators only
+                return false;
             }
-        }
-        if (!match && CompareUtils.MatchStringOption.contains(END_WITH, matchFlags)) {
-            if (one.startsWith(another)) {
-                match = true;
+            // leading separators give one empty word, trailing ones give nothing
+            if (wordStart > start) {
+                if (matchesWord(one, start, start)) {
+                    return true;
+                }
+            }
+            while (true) {
+                int wordEnd = wordStart;
+                while (wordEnd < end && !isSeparator(one.charAt(wordEnd))) {
+                    wordEnd++;
+                }
+                if (matchesWord(one, wordStart, wordEnd)) {
+                    return true;
+                }
+                wordStart = wordEnd;
+                while (wordStart < end && isSeparator(one.charAt(wordStart))) {
+                    wordStart++;
+                }
+                if (wordStart == end) {
+                    return false;
+                }
             }
         }
-        if (!match && CompareUtils.MatchStringOption.contains(END_WITH_IGNORE_CASE, matchFlags)) {
-            if (one.toLowerCase().startsWith(another.toLowerCase())) {
-                match = true;
+
+        private boolean matchesWord(@NotNull String text, int start, int end) {
+            if (!hasWordOptions) {
+                return regionStartsWith(text, start, end, autoPattern, autoIgnoreCase);
             }
+            return matches(text, start, end, autoPattern, autoIgnoreCase);
         }
-        if (!match && (CompareUtils.MatchStringOption.contains(AUTO, matchFlags) || CompareUtils.MatchStringOption.contains(AUTO_IGNORE_CASE, matchFlags))) {
-            if (!TextUtils.isEmpty(one)) {
-                one = CompareUtils.MatchStringOption.contains(AUTO_IGNORE_CASE, matchFlags) ? one.toLowerCase().trim() : one;
-                another = CompareUtils.MatchStringOption.contains(AUTO_IGNORE_CASE, matchFlags) ? another.toLowerCase().trim() : another;
-                if (stringsEqual(one, another, false)) {
-                    match = true;
-                } else {
-                    final String[] parts = one.split("[" + (separators != null && separators.length > 0 ? TextUtils.join("", separators) : " ") + "]+");
-                    if (parts.length > 0) {
-                        for (String word : parts) {
-                            if (!CompareUtils.MatchStringOption.containsAny(matchFlags, CompareUtils.MatchStringOption.valuesExceptOf(AUTO, AUTO_IGNORE_CASE).toArray(new CompareUtils.MatchStringOption[]{}))) {
-                                if (word.startsWith(another)) {
-                                    match = true;
-                                    break;
-                                }
-                            } else {
-                                if (stringMatches(word, another, CompareUtils.MatchStringOption.resetFlags(matchFlags, AUTO, AUTO_IGNORE_CASE))) {
-                                    match = true;
-                                    break;
-                                }
-                            }
-                        }
-                    }
+
+        private boolean matches(@NotNull String text, int start, int end, @NotNull String pattern, boolean ignoreCase) {
+            return equals && regionEquals(text, start, end, pattern, ignoreCase)
+                    || equalsIgnoreCase && regionEquals(text, start, end, pattern, true)
+                    || contains && regionContains(text, start, end, pattern, ignoreCase)
+                    || containsIgnoreCase && regionContains(text, start, end, pattern, true)
+                    || startsWith && regionStartsWith(text, start, end, pattern, ignoreCase)
+                    || startsWithIgnoreCase && regionStartsWith(text, start, end, pattern, true)
+                    || endsWith && regionEndsWith(text, start, end, pattern, ignoreCase)
+                    || endsWithIgnoreCase && regionEndsWith(text, start, end, pattern, true);
+        }
+
+        private boolean isSeparator(char c) {
+            for (char separator : separatorChars) {
+                if (c == separator) {
+                    return true;
                 }
             }
+            return false;
         }
 
-        return match;
+        private static boolean regionEquals(@NotNull String text, int start, int end, @NotNull String pattern, boolean ignoreCase) {
+            return end - start == pattern.length() && text.regionMatches(ignoreCase, start, pattern, 0, pattern.length());
+        }
+
+        private static boolean regionStartsWith(@NotNull String text, int start, int end, @NotNull String pattern, boolean ignoreCase) {
+            return end - start >= pattern.length() && text.regionMatches(ignoreCase, start, pattern, 0, pattern.length());
+        }
+
+        private static boolean regionEndsWith(@NotNull String text, int start, int end, @NotNull String pattern, boolean ignoreCase) {
+            return end - start >= pattern.length() && text.regionMatches(ignoreCase, end - pattern.length(), pattern, 0, pattern.length());
+        }
+
+        private static boolean regionContains(@NotNull String text, int start, int end, @NotNull String pattern, boolean ignoreCase) {
+            final int last = end - pattern.length();
+            for (int i = start; i <= last; i++) {
+                if (text.regionMatches(ignoreCase, i, pattern, 0, pattern.length())) {
+                    return true;
+                }
+            }
+            return false;
+        }
     }
 
     public enum MatchStringOption {
@@ -0,0 +1,209 @@
+package net.maxsmr.copyutil.utils;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Checksum;
+
+/**
+ * Digest of file content fed with bytes while they are copied:
+ * either {@link MessageDigest} ("SHA-256", "MD5", ...) or {@link Checksum} ("CRC32C", "CRC32", "Adler32");
+ * not thread safe, one instance per file
+ */
+public class ContentDigest {
+
+    public static final String CRC32C = "CRC32C";
+
+    public static final String CRC32 = "CRC32";
+
+    public static final String ADLER32 = "Adler32";
+
+    private static final int SCRATCH_SIZE = 64 * 1024;
+
+    private static final char[] HEX_CHARS = "0123456789abcdef".toCharArray();
+
+    @NotNull
+    private final String algorithm;
+
+    @Nullable
+    private final MessageDigest messageDigest;
+
+    @Nullable
+    private final Checksum checksum;
+
+    /**
+     * {@link Checksum#update(ByteBuffer)} of checksum class, since 9 for all but {@link CRC32} and {@link Adler32}
+     */
+    @Nullable
+    private final Method checksumBufferUpdate;
+
+    private byte[] scratch;
+
+    private ContentDigest(@NotNull String algorithm, @Nullable MessageDigest messageDigest, @Nullable Checksum checksum) {
+        this.algorithm = algorithm;
+        this.messageDigest = messageDigest;
+        this.checksum = checksum;
+        Method method = null;
+        if (checksum != null && !(checksum instanceof CRC32) && !(checksum instanceof Adler32)) {
+            try {
+                method = checksum.getClass().getMethod("update", ByteBuffer.class);
+            } catch (NoSuchMethodException e) {
+                // bytes are copied to scratch array
+            }
+        }
+        this.checksumBufferUpdate = method;
+    }
+
+    /**
+     * @return null if algorithm is not supported by current JVM ("CRC32C" requires 9)
+     */
+    @Nullable
+    public static ContentDigest create(@Nullable String algorithm) {
+        if (TextUtils.isEmpty(algorithm)) {
+            return null;
+        }
+        if (CRC32C.equalsIgnoreCase(algorithm)) {
+            try {
+                return new ContentDigest(CRC32C, null, (Checksum) Class.forName("java.util.zip.CRC32C").getDeclaredConstructor().newInstance());
+            } catch (ReflectiveOperationException e) {
+                return null;
+            }
+        }
+        if (CRC32.equalsIgnoreCase(algorithm)) {
+            return new ContentDigest(CRC32, null, new CRC32());
+        }
+        if (ADLER32.equalsIgnoreCase(algorithm)) {
+            return new ContentDigest(ADLER32, null, new Adler32());
+        }
+        try {
+            final MessageDigest messageDigest = MessageDigest.getInstance(algorithm);
+            return new ContentDigest(messageDigest.getAlgorithm(), messageDigest, null);
+        } catch (NoSuchAlgorithmException e) {
+            return null;
+        }
+    }
+
+    @NotNull
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    public void reset() {
+        if (messageDigest != null) {
+            messageDigest.reset();
+        } else if (checksum != null) {
+            checksum.reset();
+        }
+    }
+
+    public void update(@NotNull byte[] bytes, int offset, int length) {
+        if (messageDigest != null) {
+            messageDigest.update(bytes, offset, length);
+        } else if (checksum != null) {
+            checksum.update(bytes, offset, length);
+        }
+    }
+
+    /**
+     * consumes remaining bytes of buffer
+     */
+    public void update(@NotNull ByteBuffer buffer) {
+        if (messageDigest != null) {
+            messageDigest.update(buffer);
+        } else if (checksum instanceof CRC32) {
+            ((CRC32) checksum).update(buffer);
+        } else if (checksum instanceof Adler32) {
+            ((Adler32) checksum).update(buffer);
+        } else if (checksum != null) {
+            if (checksumBufferUpdate != null) {
+                try {
+                    checksumBufferUpdate.invoke(checksum, buffer);
+                    return;
+                } catch (IllegalAccessException | InvocationTargetException e) {
+                    throw new RuntimeException("Can't update " + algorithm, e);
+                }
+            }
+            if (buffer.hasArray()) {
+                checksum.update(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+                buffer.position(buffer.limit());
+                return;
+            }
+            if (scratch == null) {
+                scratch = new byte[SCRATCH_SIZE];
+            }
+            while (buffer.hasRemaining()) {
+                final int length = Math.min(scratch.length, buffer.remaining());
+                buffer.get(scratch, 0, length);
+                checksum.update(scratch, 0, length);
+            }
+        }
+    }
+
+    /**
+     * @return digest of bytes passed since creation or {@link #reset()}; checksums are 4 bytes big-endian
+     */
+    @NotNull
+    public byte[] digest() {
+        if (messageDigest != null) {
+            return messageDigest.digest();
+        }
+        final long value = checksum != null ? checksum.getValue() : 0;
+        return new byte[]{(byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8), (byte) value};
+    }
+
+    /**
+     * @return stream which passes read bytes to this digest
+     */
+    @NotNull
+    public InputStream wrap(@NotNull InputStream in) {
+        return new FilterInputStream(in) {
+            @Override
+            public int read() throws IOException {
+                final int b = super.read();
+                if (b >= 0) {
+                    update(new byte[]{(byte) b}, 0, 1);
+                }
+                return b;
+            }
+
+            @Override
+            public int read(@NotNull byte[] b, int off, int len) throws IOException {
+                final int read = super.read(b, off, len);
+                if (read > 0) {
+                    update(b, off, read);
+                }
+                return read;
+            }
+
+            @Override
+            public long skip(long n) throws IOException {
+                throw new IOException("skip is not supported while computing digest");
+            }
+
+            @Override
+            public boolean markSupported() {
+                return false;
+            }
+        };
+    }
+
+    @NotNull
+    public static String toHexString(@NotNull byte[] bytes) {
+        final char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX_CHARS[(bytes[i] >> 4) & 0x0F];
+            chars[i * 2 + 1] = HEX_CHARS[bytes[i] & 0x0F];
+        }
+        return new String(chars);
+    }
+}
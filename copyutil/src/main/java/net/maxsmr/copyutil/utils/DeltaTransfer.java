@@ -0,0 +1,451 @@
+package net.maxsmr.copyutil.utils;
+
+import net.maxsmr.copyutil.utils.logger.BaseLogger;
+import net.maxsmr.copyutil.utils.logger.holder.BaseLoggerHolder;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+import static net.maxsmr.copyutil.utils.Units.sizeToString;
+
+/**
+ * Updates existing destination file to content of source the way rsync does:
+ * destination is split into blocks with weak rolling and strong signatures,
+ * source is scanned for those blocks at any offset, so only bytes not found in destination are written;
+ * if all found blocks are at their own offsets, those bytes are written in place,
+ * otherwise file is reconstructed in temporary file which then replaces destination
+ */
+public final class DeltaTransfer {
+
+    private static final BaseLogger logger = BaseLoggerHolder.getInstance().getLogger(DeltaTransfer.class);
+
+    private static final int MIN_BLOCK_SIZE = 8 * 1024;
+
+    private static final int MAX_BLOCK_SIZE = 1024 * 1024;
+
+    private static final int SCAN_BUFFER_SIZE = 8 * 1024 * 1024;
+
+    private static final String STRONG_ALGORITHM = "MD5";
+
+    private static final String TEMP_FILE_SUFFIX = ".delta";
+
+    private DeltaTransfer() {
+        throw new AssertionError("no instances.");
+    }
+
+    /**
+     * @param digest if not null, it's fed with whole source content
+     * @return false if interrupted by notifier; destination is not changed then
+     * @throws IOException if files can't be read or written
+     */
+    public static boolean transfer(@NotNull File sourceFile, @NotNull File destFile,
+                                   @Nullable ContentDigest digest, @Nullable FileHelper.ISingleCopyNotifier notifier) throws IOException {
+
+        final long sourceSize = sourceFile.length();
+        final long destSize = destFile.length();
+        final int blockSize = getBlockSize(Math.max(sourceSize, destSize));
+
+        final Signatures signatures = Signatures.compute(destFile, destSize, blockSize);
+        final Operations operations = new Operations();
+
+        if (!scan(sourceFile, destFile, sourceSize, signatures, operations, digest, notifier)) {
+            return false;
+        }
+
+        if (operations.isAligned() && !isLinked(destFile)) {
+            applyInPlace(sourceFile, destFile, sourceSize, operations);
+            logger.i("Delta of \"" + sourceFile + "\": " + sizeToString(operations.getLiteralBytes(), Units.SizeUnit.BYTES)
+                    + " of " + sizeToString(sourceSize, Units.SizeUnit.BYTES) + " written in place");
+        } else {
+            applyToTempFile(sourceFile, destFile, operations);
+            logger.i("Delta of \"" + sourceFile + "\": " + sizeToString(operations.getLiteralBytes(), Units.SizeUnit.BYTES)
+                    + " of " + sizeToString(sourceSize, Units.SizeUnit.BYTES) + " taken from source, rest reused from destination");
+        }
+        return true;
+    }
+
+    /**
+     * @return about square root of size, so signatures count and block size grow equally
+     */
+    private static int getBlockSize(long size) {
+        final long root = (long) Math.sqrt((double) size);
+        final long rounded = (root + 1023) / 1024 * 1024;
+        return (int) Math.max(MIN_BLOCK_SIZE, Math.min(MAX_BLOCK_SIZE, rounded));
+    }
+
+    private static boolean scan(@NotNull File sourceFile, @NotNull File destFile, long sourceSize,
+                                @NotNull Signatures signatures, @NotNull Operations operations,
+                                @Nullable ContentDigest digest, @Nullable FileHelper.ISingleCopyNotifier notifier) throws IOException {
+
+        final int blockSize = signatures.blockSize;
+        final byte[] buffer = new byte[Math.max(SCAN_BUFFER_SIZE, blockSize * 2)];
+        final MessageDigest strongDigest = newStrongDigest();
+
+        final long interval = notifier != null ? notifier.notifyInterval() : 0;
+        long lastNotifyTime = 0;
+
+        try (InputStream in = new FileInputStream(sourceFile)) {
+
+            // buffer contains bytes of source from bufferStart
+            long bufferStart = 0;
+            int bufferLength = 0;
+            boolean isEof = false;
+
+            long position = 0;
+            long literalStart = -1;
+
+            boolean hasChecksum = false;
+            int a = 0;
+            int b = 0;
+
+            while (position < sourceSize) {
+
+                if (notifier != null) {
+                    if (interval <= 0 || lastNotifyTime == 0 || (System.currentTimeMillis() - lastNotifyTime) >= interval) {
+                        if (!notifier.onProcessing(sourceFile, destFile, position, sourceSize)) {
+                            return false;
+                        }
+                        lastNotifyTime = System.currentTimeMillis();
+                    }
+                }
+
+                int offset = (int) (position - bufferStart);
+                if (offset + blockSize + 1 > bufferLength && !isEof) {
+                    System.arraycopy(buffer, offset, buffer, 0, bufferLength - offset);
+                    bufferStart = position;
+                    bufferLength -= offset;
+                    offset = 0;
+                    while (bufferLength < buffer.length) {
+                        final int read = in.read(buffer, bufferLength, buffer.length - bufferLength);
+                        if (read < 0) {
+                            isEof = true;
+                            break;
+                        }
+                        if (digest != null) {
+                            digest.update(buffer, bufferLength, read);
+                        }
+                        bufferLength += read;
+                    }
+                }
+
+                if (signatures.isEmpty() || bufferLength - offset < blockSize) {
+                    // rest is shorter than block
+                    break;
+                }
+
+                if (!hasChecksum) {
+                    a = 0;
+                    b = 0;
+                    for (int i = 0; i < blockSize; i++) {
+                        final int x = buffer[offset + i] & 0xFF;
+                        a += x;
+                        b += (blockSize - i) * x;
+                    }
+                    a &= 0xFFFF;
+                    b &= 0xFFFF;
+                    hasChecksum = true;
+                }
+
+                final int preferredBlock = position % blockSize == 0 && position / blockSize < signatures.count() ? (int) (position / blockSize) : -1;
+                final int block = signatures.find(a | (b << 16), buffer, offset, preferredBlock, strongDigest);
+
+                if (block >= 0) {
+                    if (literalStart >= 0) {
+                        operations.addLiteral(literalStart, position - literalStart);
+                        literalStart = -1;
+                    }
+                    operations.addCopy(position, (long) block * blockSize, blockSize);
+                    position += blockSize;
+                    hasChecksum = false;
+                } else {
+                    if (literalStart < 0) {
+                        literalStart = position;
+                    }
+                    if (offset + blockSize < bufferLength) {
+                        final int out = buffer[offset] & 0xFF;
+                        final int next = buffer[offset + blockSize] & 0xFF;
+                        a = (a - out + next) & 0xFFFF;
+                        b = (b - blockSize * out + a) & 0xFFFF;
+                    } else {
+                        hasChecksum = false;
+                    }
+                    position++;
+                }
+            }
+
+            if (position < sourceSize) {
+                operations.addLiteral(literalStart >= 0 ? literalStart : position, sourceSize - (literalStart >= 0 ? literalStart : position));
+            } else if (literalStart >= 0) {
+                operations.addLiteral(literalStart, position - literalStart);
+            }
+
+            if (digest != null && !isEof) {
+                // bytes not needed for scanning
+                int read;
+                while ((read = in.read(buffer)) > 0) {
+                    digest.update(buffer, 0, read);
+                }
+            }
+        }
+        return true;
+    }
+
+    private static void applyInPlace(@NotNull File sourceFile, @NotNull File destFile, long sourceSize, @NotNull Operations operations) throws IOException {
+        try (RandomAccessFile source = new RandomAccessFile(sourceFile, "r");
+             RandomAccessFile dest = new RandomAccessFile(destFile, "rw")) {
+            final FileChannel sourceChannel = source.getChannel();
+            final FileChannel destChannel = dest.getChannel();
+            for (int i = 0; i < operations.size; i++) {
+                if (operations.destOffsets[i] < 0) {
+                    destChannel.position(operations.positions[i]);
+                    transfer(sourceChannel, operations.positions[i], operations.lengths[i], destChannel);
+                }
+            }
+            dest.setLength(sourceSize);
+        }
+    }
+
+    private static void applyToTempFile(@NotNull File sourceFile, @NotNull File destFile, @NotNull Operations operations) throws IOException {
+        final File tempFile = new File(destFile.getParentFile(), "." + destFile.getName() + TEMP_FILE_SUFFIX);
+        try {
+            try (RandomAccessFile source = new RandomAccessFile(sourceFile, "r");
+                 RandomAccessFile dest = new RandomAccessFile(destFile, "r");
+                 FileOutputStream temp = new FileOutputStream(tempFile)) {
+                final FileChannel sourceChannel = source.getChannel();
+                final FileChannel destChannel = dest.getChannel();
+                final FileChannel tempChannel = temp.getChannel();
+                for (int i = 0; i < operations.size; i++) {
+                    if (operations.destOffsets[i] < 0) {
+                        transfer(sourceChannel, operations.positions[i], operations.lengths[i], tempChannel);
+                    } else {
+                        transfer(destChannel, operations.destOffsets[i], operations.lengths[i], tempChannel);
+                    }
+                }
+            }
+            try {
+                Files.move(tempFile.toPath(), destFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile.toPath(), destFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            if (tempFile.exists() && !tempFile.delete()) {
+                logger.e("Can't delete \"" + tempFile + "\"");
+            }
+            throw e;
+        }
+    }
+
+    private static void transfer(@NotNull FileChannel from, long position, long length, @NotNull FileChannel to) throws IOException {
+        final long end = position + length;
+        while (position < end) {
+            final long transferred = from.transferTo(position, Math.min(FileHelper.CHANNEL_TRANSFER_CHUNK_SIZE, end - position), to);
+            if (transferred <= 0) {
+                throw new IOException("No bytes transferred at position " + position + " of " + end);
+            }
+            position += transferred;
+        }
+    }
+
+    /**
+     * @return true if file is known to have other hard links, which shouldn't be changed
+     */
+    private static boolean isLinked(@NotNull File file) {
+        try {
+            final Object count = Files.getAttribute(file.toPath(), "unix:nlink");
+            return count instanceof Number && ((Number) count).intValue() > 1;
+        } catch (IOException | UnsupportedOperationException | IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    @NotNull
+    private static MessageDigest newStrongDigest() throws IOException {
+        try {
+            return MessageDigest.getInstance(STRONG_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * signatures of full blocks of destination, with chained hash table by weak checksum
+     */
+    private static class Signatures {
+
+        final int blockSize;
+
+        final int[] weakSums;
+
+        final byte[][] strongSums;
+
+        final int[] heads;
+
+        final int[] next;
+
+        private Signatures(int blockSize, int count) {
+            this.blockSize = blockSize;
+            weakSums = new int[count];
+            strongSums = new byte[count][];
+            int tableSize = 1;
+            while (tableSize < count * 2) {
+                tableSize <<= 1;
+            }
+            heads = new int[tableSize];
+            Arrays.fill(heads, -1);
+            next = new int[count];
+        }
+
+        @NotNull
+        static Signatures compute(@NotNull File file, long size, int blockSize) throws IOException {
+            final Signatures signatures = new Signatures(blockSize, (int) (size / blockSize));
+            final MessageDigest strongDigest = newStrongDigest();
+            final byte[] block = new byte[blockSize];
+            try (InputStream in = new FileInputStream(file)) {
+                for (int i = 0; i < signatures.count(); i++) {
+                    int length = 0;
+                    while (length < blockSize) {
+                        final int read = in.read(block, length, blockSize - length);
+                        if (read < 0) {
+                            throw new IOException("Unexpected end of " + file);
+                        }
+                        length += read;
+                    }
+                    int a = 0;
+                    int b = 0;
+                    for (int j = 0; j < blockSize; j++) {
+                        final int x = block[j] & 0xFF;
+                        a += x;
+                        b += (blockSize - j) * x;
+                    }
+                    strongDigest.update(block, 0, blockSize);
+                    signatures.add(i, (a & 0xFFFF) | ((b & 0xFFFF) << 16), strongDigest.digest());
+                }
+            }
+            return signatures;
+        }
+
+        int count() {
+            return weakSums.length;
+        }
+
+        boolean isEmpty() {
+            return weakSums.length == 0;
+        }
+
+        private void add(int index, int weakSum, byte[] strongSum) {
+            weakSums[index] = weakSum;
+            strongSums[index] = strongSum;
+            final int slot = slot(weakSum);
+            next[index] = heads[slot];
+            heads[slot] = index;
+        }
+
+        /**
+         * @param preferredBlock block at same offset, which is checked first
+         * @return index of block with same content as buffer range or -1
+         */
+        int find(int weakSum, byte[] buffer, int offset, int preferredBlock, @NotNull MessageDigest strongDigest) {
+            byte[] strongSum = null;
+            if (preferredBlock >= 0 && weakSums[preferredBlock] == weakSum) {
+                strongDigest.update(buffer, offset, blockSize);
+                strongSum = strongDigest.digest();
+                if (Arrays.equals(strongSum, strongSums[preferredBlock])) {
+                    return preferredBlock;
+                }
+            }
+            for (int i = heads[slot(weakSum)]; i >= 0; i = next[i]) {
+                if (weakSums[i] != weakSum || i == preferredBlock) {
+                    continue;
+                }
+                if (strongSum == null) {
+                    strongDigest.update(buffer, offset, blockSize);
+                    strongSum = strongDigest.digest();
+                }
+                if (Arrays.equals(strongSum, strongSums[i])) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private int slot(int weakSum) {
+            return (weakSum ^ (weakSum >>> 15)) & (heads.length - 1);
+        }
+    }
+
+    /**
+     * ranges of result file in order: either taken from destination at offset or literal from source at same position
+     */
+    private static class Operations {
+
+        long[] positions = new long[16];
+
+        /**
+         * offset in destination or -1 for literal range
+         */
+        long[] destOffsets = new long[16];
+
+        long[] lengths = new long[16];
+
+        int size;
+
+        private boolean isAligned = true;
+
+        private long literalBytes;
+
+        void addLiteral(long position, long length) {
+            literalBytes += length;
+            if (size > 0 && destOffsets[size - 1] < 0 && positions[size - 1] + lengths[size - 1] == position) {
+                lengths[size - 1] += length;
+                return;
+            }
+            add(position, -1, length);
+        }
+
+        void addCopy(long position, long destOffset, long length) {
+            if (destOffset != position) {
+                isAligned = false;
+            }
+            if (size > 0 && destOffsets[size - 1] >= 0 && positions[size - 1] + lengths[size - 1] == position
+                    && destOffsets[size - 1] + lengths[size - 1] == destOffset) {
+                lengths[size - 1] += length;
+                return;
+            }
+            add(position, destOffset, length);
+        }
+
+        boolean isAligned() {
+            return isAligned;
+        }
+
+        long getLiteralBytes() {
+            return literalBytes;
+        }
+
+        private void add(long position, long destOffset, long length) {
+            if (size == positions.length) {
+                positions = Arrays.copyOf(positions, size * 2);
+                destOffsets = Arrays.copyOf(destOffsets, size * 2);
+                lengths = Arrays.copyOf(lengths, size * 2);
+            }
+            positions[size] = position;
+            destOffsets[size] = destOffset;
+            lengths[size] = length;
+            size++;
+        }
+    }
+}
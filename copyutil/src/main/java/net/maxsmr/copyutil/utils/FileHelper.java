@@ -18,19 +18,40 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileLock;
 import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Deque;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 import java.util.zip.ZipOutputStream;
@@ -47,10 +68,54 @@ public final class FileHelper {
 
     public final static int DEPTH_UNLIMITED = -1;
 
+    /**
+     * max bytes count passed to single {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)} call
+     */
+    public final static long CHANNEL_TRANSFER_CHUNK_SIZE = 8 * 1024 * 1024;
+
+    /**
+     * max bytes count of file region mapped at once by {@link CopyStrategy#MAPPED}
+     */
+    public final static long MAPPED_COPY_WINDOW_SIZE = 256 * 1024 * 1024;
+
+    /**
+     * min bytes count of one range copied by {@link CopyStrategy#CHUNKED};
+     * smaller files are copied as {@link CopyStrategy#CHANNEL}
+     */
+    public final static long CHUNKED_COPY_MIN_CHUNK_SIZE = 64 * 1024 * 1024;
+
+    private final static int CHUNKED_COPY_BUFFER_SIZE = 1024 * 1024;
+
+    /**
+     * bytes count of block which is not written by {@link CopyStrategy#SPARSE} if it's all zeros;
+     * same as usual file system block
+     */
+    public final static int SPARSE_COPY_BLOCK_SIZE = 4 * 1024;
+
+    private final static int SPARSE_COPY_BUFFER_SIZE = 1024 * 1024;
+
+    /**
+     * period of {@link ISingleCopyNotifier} calls from {@link CopyStrategy#CHUNKED} if it doesn't specify interval
+     */
+    private final static long CHUNKED_COPY_NOTIFY_PERIOD = 100;
+
     private FileHelper() {
         throw new AssertionError("no instances.");
     }
 
+    /**
+     * threads of {@link CopyStrategy#CHUNKED} shared by all copied files, created on first use;
+     * daemon, so they don't keep process alive
+     */
+    private static final class ChunksExecutorHolder {
+
+        static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), r -> {
+            final Thread thread = new Thread(r, "CopyChunks");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
 
     public static double getPartitionTotalSpace(String path, @NotNull Units.SizeUnit unit) {
         if (isDirExists(path)) {
@@ -749,7 +814,7 @@ public final class FileHelper {
                     zis = zip.getInputStream(e);
                     fos = new FileOutputStream(path);
 
-                    if (!revectorStream(zis, fos)) {
+                    if (!revectorStream(zis, fos, null, true, true, e.getSize())) {
                         logger.e("revectorStream() failed");
                         return false;
                     }
@@ -783,102 +848,148 @@ public final class FileHelper {
         return true;
     }
 
-    @NotNull
-    public static Set<File> getFiles(Collection<File> fromFiles, @NotNull GetMode mode, @Nullable Comparator<? super File> comparator, @Nullable IGetNotifier notifier, int depth) {
-        Set<File> collected = new LinkedHashSet<>();
-        if (fromFiles != null) {
-            for (File fromFile : fromFiles) {
-                collected.addAll(getFiles(fromFile, mode, comparator, notifier, depth));
-            }
-        }
-        return collected;
-    }
-
     /**
-     * @param fromFile file or directory
-     * @return collected set of files or directories from specified directories without source files
+     * Walks specified file or directory tree depth-first without collecting it:
+     * each entry is passed to notifier as soon as it's listed
+     *
+     * @param fromFile   file or directory
+     * @param comparator to sort each folders list; if null, entries are passed in directory order
+     * @return false if walking was terminated by notifier
      */
-    @NotNull
-    public static Set<File> getFiles(File fromFile, @NotNull GetMode mode, @Nullable Comparator<? super File> comparator, @Nullable IGetNotifier notifier, int depth) {
-        return getFiles(fromFile, mode, comparator, notifier, depth, 0, null);
+    public static boolean walk(File fromFile, @Nullable Comparator<? super File> comparator, @NotNull IWalkNotifier notifier, int depth) {
+        return fromFile == null || !fromFile.exists() || walk(fromFile, comparator, notifier, depth, 0) != FileVisitResult.TERMINATE;
     }
 
     @NotNull
-    private static Set<File> getFiles(File fromFile, @NotNull GetMode mode,
-                                      @Nullable Comparator<? super File> comparator, @Nullable IGetNotifier notifier,
-                                      int depth, int currentLevel, @Nullable Set<File> collected) {
-
-        final Set<File> result = new LinkedHashSet<>();
+    private static FileVisitResult walk(File file, @Nullable Comparator<? super File> comparator, @NotNull IWalkNotifier notifier, int depth, int currentLevel) {
 
-        if (collected == null) {
-            collected = new LinkedHashSet<>();
+        if (file.isFile()) {
+            return notifier.onFile(file, currentLevel);
         }
 
-        if (fromFile != null && fromFile.exists()) {
+        if (!file.isDirectory()) {
+            logger.e("incorrect file or folder: " + file);
+            return FileVisitResult.CONTINUE;
+        }
 
-            boolean shouldBreak = false;
+        final FileVisitResult enterResult = notifier.onEnterFolder(file, currentLevel);
+        if (enterResult != FileVisitResult.CONTINUE) {
+            return enterResult == FileVisitResult.SKIP_SUBTREE ? FileVisitResult.CONTINUE : enterResult;
+        }
 
-            if (notifier != null) {
-                if (!notifier.onProcessing(fromFile, Collections.unmodifiableSet(collected), currentLevel)) {
-                    shouldBreak = true;
+        if (comparator == null) {
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(file.toPath())) {
+                for (Path path : stream) {
+                    final FileVisitResult result = walkEntry(path.toFile(), null, notifier, depth, currentLevel);
+                    if (result == FileVisitResult.TERMINATE) {
+                        return result;
+                    }
+                    if (result == FileVisitResult.SKIP_SIBLINGS) {
+                        break;
+                    }
                 }
+            } catch (IOException | DirectoryIteratorException e) {
+                logger.e("an Exception occurred during listing " + file, e);
             }
-
-            if (!shouldBreak) {
-
-//            if (mode == GetMode.FOLDERS || mode == GetMode.ALL) {
-//                if (notifier == null || notifier.onGet(fromFile)) {
-//                    result.add(fromFile);
-//                }
-//            }
-
-                boolean isCorrect = true;
-
-                if (fromFile.isDirectory()) {
-
-                    File[] files = fromFile.listFiles();
-
-                    if (files != null) {
-
-                        for (File f : files) {
-
-                            if (f.isDirectory()) {
-
-                                if (depth == DEPTH_UNLIMITED || depth > currentLevel) {
-                                    result.addAll(getFiles(f, mode, comparator, notifier, depth, currentLevel + 1, collected));
-                                }
-
-                            } else if (f.isFile()) {
-                                result.addAll(getFiles(f, mode, comparator, notifier, depth, currentLevel, collected));
-                            } else {
-                                logger.e("incorrect file or folder: " + f);
-                            }
-                        }
+        } else {
+            File[] files = file.listFiles();
+            if (files != null) {
+                Arrays.sort(files, comparator);
+                for (File f : files) {
+                    final FileVisitResult result = walkEntry(f, comparator, notifier, depth, currentLevel);
+                    if (result == FileVisitResult.TERMINATE) {
+                        return result;
                     }
-                } else if (!fromFile.isFile()) {
-                    logger.e("incorrect file or folder: " + fromFile);
-                    isCorrect = false;
-                }
-
-                if (isCorrect) {
-                    if (fromFile.isFile() ? mode == GetMode.FILES : mode == GetMode.FOLDERS || mode == GetMode.ALL) {
-                        if (notifier == null || (fromFile.isFile() ? notifier.onGetFile(fromFile) : notifier.onGetFolder(fromFile))) {
-                            result.add(fromFile);
-                            collected.add(fromFile);
-                        }
+                    if (result == FileVisitResult.SKIP_SIBLINGS) {
+                        break;
                     }
                 }
             }
         }
 
+        final FileVisitResult leaveResult = notifier.onLeaveFolder(file, currentLevel);
+        return leaveResult == FileVisitResult.TERMINATE ? leaveResult : FileVisitResult.CONTINUE;
+    }
+
+    @NotNull
+    private static FileVisitResult walkEntry(File entry, @Nullable Comparator<? super File> comparator, @NotNull IWalkNotifier notifier, int depth, int currentLevel) {
+        if (entry.isDirectory()) {
+            if (depth == DEPTH_UNLIMITED || depth > currentLevel) {
+                return walk(entry, comparator, notifier, depth, currentLevel + 1);
+            }
+            return FileVisitResult.CONTINUE;
+        }
+        return walk(entry, comparator, notifier, depth, currentLevel);
+    }
+
+    /**
+     * Walks specified tree like {@link #walk(File, Comparator, IWalkNotifier, int)}, but each subdirectory is listed
+     * in separate task of specified pool, so folders on different levels are walked concurrently;
+     * notifier must be thread-safe, {@link IWalkNotifier#onLeaveFolder(File, int)} is called
+     * after all subdirectories of this folder were walked
+     *
+     * @param pool if null, {@link ForkJoinPool#commonPool()} is used
+     * @return false if walking was terminated by notifier
+     */
+    public static boolean walkParallel(File fromFile, @NotNull IWalkNotifier notifier, int depth, @Nullable ForkJoinPool pool) {
+        if (fromFile == null || !fromFile.exists()) {
+            return true;
+        }
+        if (!fromFile.isDirectory()) {
+            return walk(fromFile, null, notifier, depth, 0) != FileVisitResult.TERMINATE;
+        }
+        if (pool == null) {
+            pool = ForkJoinPool.commonPool();
+        }
+        final AtomicBoolean terminated = new AtomicBoolean();
+        pool.invoke(new WalkTask(fromFile, notifier, depth, 0, terminated));
+        return !terminated.get();
+    }
+
+    @NotNull
+    private static Set<File> sortFiles(@NotNull Set<File> files, @Nullable Comparator<? super File> comparator) {
         if (comparator != null) {
-            List<File> sortedList = new ArrayList<>(result);
+            List<File> sortedList = new ArrayList<>(files);
             Collections.sort(sortedList, comparator);
-            result.clear();
-            result.addAll(sortedList);
+            files.clear();
+            files.addAll(sortedList);
         }
+        return files;
+    }
 
-        return result;
+    @NotNull
+    public static Set<File> getFiles(Collection<File> fromFiles, @NotNull GetMode mode, @Nullable Comparator<? super File> comparator, @Nullable IGetNotifier notifier, int depth) {
+        Set<File> collected = new LinkedHashSet<>();
+        if (fromFiles != null) {
+            for (File fromFile : fromFiles) {
+                collected.addAll(getFiles(fromFile, mode, comparator, notifier, depth));
+            }
+        }
+        return collected;
+    }
+
+    /**
+     * @param fromFile file or directory
+     * @return collected set of files or directories from specified directories without source files
+     */
+    @NotNull
+    public static Set<File> getFiles(File fromFile, @NotNull GetMode mode, @Nullable Comparator<? super File> comparator, @Nullable IGetNotifier notifier, int depth) {
+        final Set<File> result = new LinkedHashSet<>();
+        walk(fromFile, null, new GetWalkNotifier(mode, null, 0, notifier, result), depth);
+        return sortFiles(result, comparator);
+    }
+
+    /**
+     * Same as {@link #getFiles(File, GetMode, Comparator, IGetNotifier, int)}, but each subdirectory is listed
+     * in separate task of specified pool; notifier calls are serialized
+     *
+     * @param pool if null, {@link ForkJoinPool#commonPool()} is used
+     */
+    @NotNull
+    public static Set<File> getFilesParallel(File fromFile, @NotNull GetMode mode, @Nullable Comparator<? super File> comparator, @Nullable IGetNotifier notifier, int depth, @Nullable ForkJoinPool pool) {
+        final Set<File> result = ConcurrentHashMap.newKeySet();
+        walkParallel(fromFile, new GetWalkNotifier(mode, null, 0, notifier, result), depth, pool);
+        return sortFiles(new LinkedHashSet<>(result), comparator);
     }
 
     @NotNull
@@ -886,7 +997,7 @@ public final class FileHelper {
         Set<File> collected = new LinkedHashSet<>();
         if (searchFiles != null) {
             for (File searchFile : searchFiles) {
-                collected.addAll(searchByName(name, searchFile, mode, searchFlags, comparator, notifier, depth, 0, null));
+                collected.addAll(searchByName(name, searchFile, mode, searchFlags, comparator, notifier, depth));
             }
         }
         return collected;
@@ -898,81 +1009,22 @@ public final class FileHelper {
      */
     @NotNull
     public static Set<File> searchByName(String name, File searchFile, @NotNull GetMode mode, int searchFlags, @Nullable Comparator<? super File> comparator, @Nullable IGetNotifier notifier, int depth) {
-        return searchByName(name, searchFile, mode, searchFlags, comparator, notifier, depth, 0, null);
+        final Set<File> result = new LinkedHashSet<>();
+        walk(searchFile, comparator, new GetWalkNotifier(mode, name, searchFlags, notifier, result), depth);
+        return sortFiles(result, comparator);
     }
 
+    /**
+     * Same as {@link #searchByName(String, File, GetMode, int, Comparator, IGetNotifier, int)}, but each subdirectory is listed
+     * in separate task of specified pool; notifier calls are serialized
+     *
+     * @param pool if null, {@link ForkJoinPool#commonPool()} is used
+     */
     @NotNull
-    private static Set<File> searchByName(String name, File searchFile, @NotNull GetMode mode, int searchFlags, @Nullable Comparator<? super File> comparator, @Nullable IGetNotifier notifier,
-                                          int depth, int currentLevel, @Nullable Set<File> foundFiles) {
-
-        Set<File> result = new LinkedHashSet<>();
-
-        if (foundFiles == null) {
-            foundFiles = new LinkedHashSet<>();
-        }
-
-        if (searchFile != null && searchFile.exists()) {
-
-            if (notifier != null) {
-                if (!notifier.onProcessing(searchFile, Collections.unmodifiableSet(foundFiles), currentLevel)) {
-                    return result;
-                }
-            }
-
-            boolean isCorrect = true;
-
-            if (searchFile.isDirectory()) {
-
-                File[] files = searchFile.listFiles();
-
-                if (files != null) {
-
-                    if (comparator != null) {
-                        List<File> sorted = new ArrayList<>(Arrays.asList(files));
-                        Collections.sort(sorted, comparator);
-                        files = sorted.toArray(new File[sorted.size()]);
-                    }
-
-                    for (File f : files) {
-
-                        if (f.isDirectory()) {
-                            if (depth == DEPTH_UNLIMITED || depth > currentLevel) {
-                                result.addAll(searchByName(name, f, mode, searchFlags, comparator, notifier, depth, currentLevel + 1, foundFiles));
-                            }
-                        } else if (f.isFile()) {
-                            result.addAll(searchByName(name, f, mode, searchFlags, comparator, notifier, depth, currentLevel, foundFiles));
-                        } else {
-                            logger.e("incorrect file or folder: " + f);
-                        }
-
-                    }
-                }
-
-            } else if (!searchFile.isFile()) {
-                logger.e("incorrect file or folder: " + searchFile);
-                isCorrect = false;
-            }
-
-            if (isCorrect) {
-                if (searchFile.isFile() ? mode == GetMode.FILES : mode == GetMode.FOLDERS || mode == GetMode.ALL) {
-                    if (CompareUtils.stringMatches(searchFile.getName(), name, searchFlags)) {
-                        if (notifier == null || (searchFile.isFile() ? notifier.onGetFile(searchFile) : notifier.onGetFolder(searchFile))) {
-                            result.add(searchFile);
-                            foundFiles.add(searchFile);
-                        }
-                    }
-                }
-            }
-        }
-
-        if (comparator != null) {
-            List<File> sortedList = new ArrayList<>(result);
-            Collections.sort(sortedList, comparator);
-            result.clear();
-            result.addAll(sortedList);
-        }
-
-        return result;
+    public static Set<File> searchByNameParallel(String name, File searchFile, @NotNull GetMode mode, int searchFlags, @Nullable Comparator<? super File> comparator, @Nullable IGetNotifier notifier, int depth, @Nullable ForkJoinPool pool) {
+        final Set<File> result = ConcurrentHashMap.newKeySet();
+        walkParallel(searchFile, new GetWalkNotifier(mode, name, searchFlags, notifier, result), depth, pool);
+        return sortFiles(new LinkedHashSet<>(result), comparator);
     }
 
     @NotNull
@@ -1005,8 +1057,11 @@ public final class FileHelper {
         return !found.isEmpty() ? new ArrayList<>(found).get(0) : null;
     }
 
+    /**
+     * directory is not listed: deleting of non-empty one just fails
+     */
     public static boolean deleteEmptyDir(File dir) {
-        return isDirEmpty(dir) && dir.delete();
+        return isDirExists(dir) && dir.delete();
     }
 
     public static boolean deleteFile(File file) {
@@ -1045,95 +1100,77 @@ public final class FileHelper {
      * @return set of deleted files
      */
     @NotNull
-    public static Set<File> delete(File fromFile, boolean deleteEmptyDirs, @Nullable Collection<File> excludeFiles, @Nullable Comparator<? super File> comparator, @Nullable IDeleteNotifier notifier, int depth) {
-        return delete(fromFile, deleteEmptyDirs, excludeFiles, comparator, notifier, depth, 0, null);
-    }
-
-    @NotNull
-    private static Set<File> delete(File fromFile, boolean deleteEmptyDirs, @Nullable Collection<File> excludeFiles, @Nullable Comparator<? super File> comparator, @Nullable IDeleteNotifier notifier,
-                                    int depth, int currentLevel, @Nullable Set<File> deletedFiles) {
+    public static Set<File> delete(final File fromFile, final boolean deleteEmptyDirs, @Nullable final Collection<File> excludeFiles, @Nullable Comparator<? super File> comparator, @Nullable final IDeleteNotifier notifier, int depth) {
 
-        Set<File> result = new LinkedHashSet<>();
-
-        if (deletedFiles == null) {
-            deletedFiles = new LinkedHashSet<>();
-        }
+        final Set<File> result = new LinkedHashSet<>();
 
-        if (fromFile != null && fromFile.exists()) {
+        final Set<File> deleted = Collections.unmodifiableSet(result);
 
-            boolean shouldBreak = false;
+        // remaining entries of entered folders, so that emptied folders are not listed again
+        final Deque<int[]> remainingCounts = new ArrayDeque<>();
 
-            if (notifier != null) {
-                if (!notifier.onProcessing(fromFile, Collections.unmodifiableSet(deletedFiles), currentLevel)) {
-                    shouldBreak = true;
+        walk(fromFile, comparator, new IWalkNotifier() {
+            @NotNull
+            @Override
+            public FileVisitResult onEnterFolder(@NotNull File folder, int level) {
+                addRemaining(1);
+                if (isExcluded(folder)) {
+                    return FileVisitResult.SKIP_SUBTREE;
                 }
+                if (notifier != null && !notifier.onProcessing(folder, deleted, level)) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                remainingCounts.push(new int[]{0});
+                return FileVisitResult.CONTINUE;
             }
 
-            if (!shouldBreak) {
-
-                if (fromFile.isDirectory()) {
-                    File[] files = fromFile.listFiles();
-
-                    if (files != null) {
-
-                        if (comparator != null) {
-                            List<File> sorted = new ArrayList<>(Arrays.asList(files));
-                            Collections.sort(sorted, comparator);
-                            files = sorted.toArray(new File[sorted.size()]);
-                        }
-
-                        for (File f : files) {
-
-                            if (excludeFiles == null || !excludeFiles.contains(f)) {
-                                if (f.isDirectory()) {
-                                    if (depth == DEPTH_UNLIMITED || depth > currentLevel) {
-                                        result.addAll(delete(f, deleteEmptyDirs, excludeFiles, comparator, notifier, depth, currentLevel + 1, deletedFiles));
-                                    }
-                                    if (deleteEmptyDirs && isDirEmpty(f)) {
-                                        if (notifier == null || notifier.confirmDeleteFolder(f)) {
-                                            if (f.delete()) {
-                                                result.add(f);
-                                                deletedFiles.add(f);
-                                            } else if (notifier != null) {
-                                                notifier.onDeleteFolderFailed(f);
-                                            }
-                                        }
-                                    }
-                                } else if (f.isFile()) {
-                                    result.addAll(delete(f, deleteEmptyDirs, excludeFiles, comparator, notifier, depth, currentLevel, deletedFiles));
-                                } else {
-                                    logger.e("incorrect file or folder: " + f);
-                                }
-                            }
-                        }
-
-                        if (deleteEmptyDirs && isDirEmpty(fromFile)) {
-                            if (notifier == null || notifier.confirmDeleteFolder(fromFile)) {
-                                if (fromFile.delete()) {
-                                    result.add(fromFile);
-                                    deletedFiles.add(fromFile);
-                                } else if (notifier != null) {
-                                    notifier.onDeleteFolderFailed(fromFile);
-                                }
-                            }
+            @NotNull
+            @Override
+            public FileVisitResult onFile(@NotNull File file, int level) {
+                addRemaining(1);
+                if (!isExcluded(file) && (notifier == null || notifier.onProcessing(file, deleted, level))) {
+                    if (notifier == null || notifier.confirmDeleteFile(file)) {
+                        if (file.delete()) {
+                            result.add(file);
+                            addRemaining(-1);
+                        } else if (notifier != null) {
+                            notifier.onDeleteFileFailed(file);
                         }
                     }
-                } else if (fromFile.isFile()) {
+                }
+                return FileVisitResult.CONTINUE;
+            }
 
-                    if (notifier == null || notifier.confirmDeleteFile(fromFile)) {
-                        if (fromFile.delete()) {
-                            result.add(fromFile);
-                            deletedFiles.add(fromFile);
+            @NotNull
+            @Override
+            public FileVisitResult onLeaveFolder(@NotNull File folder, int level) {
+                final int remaining = remainingCounts.pop()[0];
+                // subfolders deeper than depth are not walked, so they are not counted
+                final boolean isEmpty = remaining == 0 && (depth == DEPTH_UNLIMITED || depth > level || isDirEmpty(folder));
+                if (deleteEmptyDirs && isEmpty) {
+                    if (notifier == null || notifier.confirmDeleteFolder(folder)) {
+                        if (folder.delete()) {
+                            result.add(folder);
+                            addRemaining(-1);
                         } else if (notifier != null) {
-                            notifier.onDeleteFileFailed(fromFile);
+                            notifier.onDeleteFolderFailed(folder);
                         }
                     }
+                }
+                return FileVisitResult.CONTINUE;
+            }
 
-                } else {
-                    logger.e("incorrect file or folder: " + fromFile);
+            private void addRemaining(int count) {
+                final int[] remaining = remainingCounts.peek();
+                if (remaining != null) {
+                    remaining[0] += count;
                 }
             }
-        }
+
+            private boolean isExcluded(File file) {
+                return excludeFiles != null && !file.equals(fromFile) && excludeFiles.contains(file);
+            }
+        }, depth);
 
         return result;
     }
@@ -1142,6 +1179,44 @@ public final class FileHelper {
         return getSize(f, depth, 0);
     }
 
+    /**
+     * Same as {@link #getSize(File, int)}, but each subdirectory is listed in separate task of specified pool
+     *
+     * @param pool if null, {@link ForkJoinPool#commonPool()} is used
+     */
+    public static long getSizeParallel(File f, final int depth, @Nullable ForkJoinPool pool) {
+        if (f == null) {
+            return 0;
+        }
+        if (f.isFile()) {
+            return f.length();
+        }
+        final LongAdder size = new LongAdder();
+        walkParallel(f, new IWalkNotifier() {
+            @NotNull
+            @Override
+            public FileVisitResult onEnterFolder(@NotNull File folder, int currentLevel) {
+                return FileVisitResult.CONTINUE;
+            }
+
+            @NotNull
+            @Override
+            public FileVisitResult onFile(@NotNull File file, int currentLevel) {
+                if (depth == DEPTH_UNLIMITED || depth > currentLevel) {
+                    size.add(file.length());
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @NotNull
+            @Override
+            public FileVisitResult onLeaveFolder(@NotNull File folder, int currentLevel) {
+                return FileVisitResult.CONTINUE;
+            }
+        }, depth, pool);
+        return size.sum();
+    }
+
     private static long getSize(File f, int depth, int currentLevel) {
         long size = 0;
         if (f.isDirectory()) {
@@ -1197,6 +1272,28 @@ public final class FileHelper {
     @Nullable
     public static File copyFileWithBuffering(final File sourceFile, String destName, String destDir, boolean rewrite, boolean preserveFileDate,
                                              @Nullable final ISingleCopyNotifier notifier) {
+        return copyFileWithBuffering(sourceFile, destName, destDir, rewrite, preserveFileDate, CopyStrategy.CHANNEL, notifier);
+    }
+
+    /**
+     * @param strategy how bytes should be moved; if it fails, stream copy is used
+     * @return dest file
+     */
+    @Nullable
+    public static File copyFileWithBuffering(final File sourceFile, String destName, String destDir, boolean rewrite, boolean preserveFileDate,
+                                             @NotNull CopyStrategy strategy, @Nullable final ISingleCopyNotifier notifier) {
+        return copyFileWithBuffering(sourceFile, destName, destDir, rewrite, preserveFileDate, strategy, null, notifier);
+    }
+
+    /**
+     * @param strategy how bytes should be moved; if it fails, stream copy is used
+     * @param digest   if not null, it's reset and fed with copied bytes in same pass;
+     *                 {@link CopyStrategy#CHANNEL} and {@link CopyStrategy#CHUNKED} then copy through buffer sequentially
+     * @return dest file
+     */
+    @Nullable
+    public static File copyFileWithBuffering(final File sourceFile, String destName, String destDir, boolean rewrite, boolean preserveFileDate,
+                                             @NotNull CopyStrategy strategy, @Nullable ContentDigest digest, @Nullable final ISingleCopyNotifier notifier) {
 
         if (!isFileExists(sourceFile)) {
             logger.e("source file not exists: " + sourceFile);
@@ -1212,6 +1309,28 @@ public final class FileHelper {
             return null;
         }
 
+        if (strategy == CopyStrategy.DELTA) {
+            if (rewrite && isFileExists(destFile)) {
+                try {
+                    if (digest != null) {
+                        digest.reset();
+                    }
+                    if (!DeltaTransfer.transfer(sourceFile, destFile, digest, notifier)) {
+                        return null;
+                    }
+                    if (preserveFileDate) {
+                        if (!destFile.setLastModified(sourceFile.lastModified())) {
+                            logger.e("Can't set last modified on destination file: " + destFile);
+                        }
+                    }
+                    return destFile;
+                } catch (IOException e) {
+                    logger.e("an IOException occurred during delta transfer, falling back to channel copy", e);
+                }
+            }
+            strategy = CopyStrategy.CHANNEL;
+        }
+
         destFile = createNewFile(targetName, destDir, rewrite);
 
         if (destFile == null) {
@@ -1219,33 +1338,501 @@ public final class FileHelper {
             return null;
         }
 
-        final long totalBytesCount = sourceFile.length();
+        Boolean copied = null;
 
-        try {
-            File finalDestFile = destFile;
-            if (writeFromStreamToFile(new FileInputStream(sourceFile), destFile.getName(), destFile.getParent(), !rewrite, notifier != null ? new StreamUtils.IStreamNotifier() {
-                @Override
-                public long notifyInterval() {
-                    return notifier.notifyInterval();
-                }
+        if (digest != null) {
+            digest.reset();
+        }
 
-                @Override
-                public boolean onProcessing(@NotNull InputStream inputStream, @NotNull OutputStream outputStream, long bytesWrite, long bytesLeft) {
-                    return notifier.onProcessing(sourceFile, finalDestFile, bytesWrite, totalBytesCount);
-                }
-            } : null) != null) {
-                if (preserveFileDate) {
-                    if (!destFile.setLastModified(sourceFile.lastModified())) {
-                        logger.e("Can't set last modified on destination file: " + destFile);
-                    }
-                }
-                return destFile;
-            }
+        if (strategy == CopyStrategy.CHANNEL) {
+            try {
+                copied = transferFile(sourceFile, destFile, digest, notifier);
+            } catch (IOException e) {
+                logger.e("an IOException occurred during transferFile(), falling back to stream copy", e);
+            }
+        } else if (strategy == CopyStrategy.MAPPED) {
+            try {
+                copied = mapFile(sourceFile, destFile, digest, notifier);
+            } catch (IOException e) {
+                logger.e("an IOException occurred during mapFile(), falling back to stream copy", e);
+            }
+        } else if (strategy == CopyStrategy.CHUNKED) {
+            try {
+                copied = copyFileByChunks(sourceFile, destFile, digest, notifier);
+            } catch (IOException e) {
+                logger.e("an IOException occurred during copyFileByChunks(), falling back to stream copy", e);
+            }
+        } else if (strategy == CopyStrategy.SPARSE) {
+            try {
+                copied = copySparseFile(sourceFile, destFile, digest, notifier);
+            } catch (IOException e) {
+                logger.e("an IOException occurred during copySparseFile(), falling back to stream copy", e);
+            }
+        }
+
+        if (copied == null) {
+            if (digest != null) {
+                digest.reset();
+            }
+            copied = copyFileWithStreams(sourceFile, destFile, rewrite, digest, notifier);
+        }
+
+        if (copied) {
+            if (preserveFileDate) {
+                if (!destFile.setLastModified(sourceFile.lastModified())) {
+                    logger.e("Can't set last modified on destination file: " + destFile);
+                }
+            }
+            return destFile;
+        }
+
+        return null;
+    }
+
+    private static boolean copyFileWithStreams(final File sourceFile, final File destFile, boolean rewrite,
+                                               @Nullable ContentDigest digest, @Nullable final ISingleCopyNotifier notifier) {
+
+        final long totalBytesCount = sourceFile.length();
+
+        try {
+            final InputStream inputStream = new FileInputStream(sourceFile);
+            return writeFromStreamToFile(digest != null ? digest.wrap(inputStream) : inputStream, destFile.getName(), destFile.getParent(), !rewrite, notifier != null ? new StreamUtils.IStreamNotifier() {
+                @Override
+                public long notifyInterval() {
+                    return notifier.notifyInterval();
+                }
+
+                @Override
+                public boolean onProcessing(@NotNull InputStream inputStream, @NotNull OutputStream outputStream, long bytesWrite, long bytesLeft) {
+                    return notifier.onProcessing(sourceFile, destFile, bytesWrite, totalBytesCount);
+                }
+            } : null) != null;
         } catch (FileNotFoundException e) {
             logger.e("an Exception occurred", e);
         }
 
-        return null;
+        return false;
+    }
+
+    /**
+     * Copies file content with {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)},
+     * so kernel can move bytes without passing them through user space;
+     * if digest is specified, bytes are read into direct buffer to be digested before write instead
+     *
+     * @return false if copying was interrupted by notifier
+     * @throws IOException if channels can't be opened or transfer failed
+     */
+    private static boolean transferFile(final File sourceFile, final File destFile,
+                                        @Nullable ContentDigest digest, @Nullable final ISingleCopyNotifier notifier) throws IOException {
+
+        FileInputStream inputStream = null;
+        FileOutputStream outputStream = null;
+
+        try {
+            inputStream = new FileInputStream(sourceFile);
+            outputStream = new FileOutputStream(destFile);
+
+            final FileChannel sourceChannel = inputStream.getChannel();
+            final FileChannel destChannel = outputStream.getChannel();
+
+            final long totalBytesCount = sourceChannel.size();
+            final long interval = notifier != null ? notifier.notifyInterval() : 0;
+
+            final ByteBuffer buffer = digest != null ? ByteBuffer.allocateDirect((int) Math.min(CHUNKED_COPY_BUFFER_SIZE, Math.max(totalBytesCount, 1))) : null;
+
+            long position = 0;
+            long lastNotifyTime = 0;
+
+            while (position < totalBytesCount) {
+                if (notifier != null) {
+                    if (interval <= 0 || lastNotifyTime == 0 || (System.currentTimeMillis() - lastNotifyTime) >= interval) {
+                        if (!notifier.onProcessing(sourceFile, destFile, position, totalBytesCount)) {
+                            return false;
+                        }
+                        lastNotifyTime = System.currentTimeMillis();
+                    }
+                }
+                final long transferred;
+                if (buffer != null) {
+                    buffer.clear();
+                    buffer.limit((int) Math.min(buffer.capacity(), totalBytesCount - position));
+                    transferred = sourceChannel.read(buffer, position);
+                    if (transferred > 0) {
+                        buffer.flip();
+                        digest.update(buffer.duplicate());
+                        while (buffer.hasRemaining()) {
+                            destChannel.write(buffer);
+                        }
+                    }
+                } else {
+                    transferred = sourceChannel.transferTo(position, Math.min(CHANNEL_TRANSFER_CHUNK_SIZE, totalBytesCount - position), destChannel);
+                }
+                if (transferred <= 0) {
+                    throw new IOException("No bytes transferred from " + sourceFile + " at position " + position + " of " + totalBytesCount);
+                }
+                position += transferred;
+            }
+
+            if (notifier != null) {
+                // completion is reported regardless of interval, copying can't be interrupted anymore
+                notifier.onProcessing(sourceFile, destFile, totalBytesCount, totalBytesCount);
+            }
+
+            return true;
+
+        } finally {
+            try {
+                if (inputStream != null) {
+                    inputStream.close();
+                }
+                if (outputStream != null) {
+                    outputStream.close();
+                }
+            } catch (IOException e) {
+                logger.e("an IOException occurred during close()", e);
+            }
+        }
+    }
+
+    /**
+     * Copies file content between {@link MappedByteBuffer}s of source and preallocated destination,
+     * mapping them by windows of {@link #MAPPED_COPY_WINDOW_SIZE}
+     *
+     * @return false if copying was interrupted by notifier
+     * @throws IOException if files can't be opened or mapped
+     */
+    private static boolean mapFile(final File sourceFile, final File destFile,
+                                   @Nullable ContentDigest digest, @Nullable final ISingleCopyNotifier notifier) throws IOException {
+
+        RandomAccessFile sourceRandomAccessFile = null;
+        RandomAccessFile destRandomAccessFile = null;
+
+        try {
+            sourceRandomAccessFile = new RandomAccessFile(sourceFile, "r");
+            destRandomAccessFile = new RandomAccessFile(destFile, "rw");
+
+            final FileChannel sourceChannel = sourceRandomAccessFile.getChannel();
+            final FileChannel destChannel = destRandomAccessFile.getChannel();
+
+            final long totalBytesCount = sourceChannel.size();
+            final long interval = notifier != null ? notifier.notifyInterval() : 0;
+
+            destRandomAccessFile.setLength(totalBytesCount);
+
+            long position = 0;
+            long lastNotifyTime = 0;
+
+            while (position < totalBytesCount) {
+                if (notifier != null) {
+                    if (interval <= 0 || lastNotifyTime == 0 || (System.currentTimeMillis() - lastNotifyTime) >= interval) {
+                        if (!notifier.onProcessing(sourceFile, destFile, position, totalBytesCount)) {
+                            return false;
+                        }
+                        lastNotifyTime = System.currentTimeMillis();
+                    }
+                }
+                final long windowSize = Math.min(MAPPED_COPY_WINDOW_SIZE, totalBytesCount - position);
+                MappedByteBuffer sourceBuffer = null;
+                MappedByteBuffer destBuffer = null;
+                try {
+                    sourceBuffer = sourceChannel.map(FileChannel.MapMode.READ_ONLY, position, windowSize);
+                    destBuffer = destChannel.map(FileChannel.MapMode.READ_WRITE, position, windowSize);
+                    if (digest != null) {
+                        digest.update(sourceBuffer.duplicate());
+                    }
+                    destBuffer.put(sourceBuffer);
+                } finally {
+                    JvmUtils.unmap(sourceBuffer);
+                    JvmUtils.unmap(destBuffer);
+                }
+                position += windowSize;
+            }
+
+            return true;
+
+        } finally {
+            try {
+                if (sourceRandomAccessFile != null) {
+                    sourceRandomAccessFile.close();
+                }
+                if (destRandomAccessFile != null) {
+                    destRandomAccessFile.close();
+                }
+            } catch (IOException e) {
+                logger.e("an IOException occurred during close()", e);
+            }
+        }
+    }
+
+    /**
+     * Splits file into byte ranges, which are copied concurrently by shared threads with positional reads and writes
+     * into preallocated destination; destination is deleted if any range failed or copying was interrupted;
+     * digest needs bytes in order, so with it file is copied sequentially
+     *
+     * @return false if copying was interrupted by notifier
+     * @throws IOException if files can't be opened or any range copy failed
+     */
+    private static boolean copyFileByChunks(final File sourceFile, final File destFile,
+                                            @Nullable ContentDigest digest, @Nullable final ISingleCopyNotifier notifier) throws IOException {
+
+        final long totalBytesCount = sourceFile.length();
+        final int chunksCount = (int) Math.min(Runtime.getRuntime().availableProcessors(), totalBytesCount / CHUNKED_COPY_MIN_CHUNK_SIZE);
+
+        if (chunksCount <= 1 || digest != null) {
+            return transferFile(sourceFile, destFile, digest, notifier);
+        }
+
+        boolean result = false;
+
+        RandomAccessFile sourceRandomAccessFile = null;
+        RandomAccessFile destRandomAccessFile = null;
+
+        final List<Future<?>> futures = new ArrayList<>(chunksCount);
+        final AtomicBoolean isCancelled = new AtomicBoolean();
+
+        try {
+            sourceRandomAccessFile = new RandomAccessFile(sourceFile, "r");
+            destRandomAccessFile = new RandomAccessFile(destFile, "rw");
+
+            destRandomAccessFile.setLength(totalBytesCount);
+
+            // positional reads and writes don't change channel position, so channels are shared between ranges
+            final FileChannel sourceChannel = sourceRandomAccessFile.getChannel();
+            final FileChannel destChannel = destRandomAccessFile.getChannel();
+
+            final long chunkSize = (totalBytesCount + chunksCount - 1) / chunksCount;
+
+            final AtomicLong bytesCopied = new AtomicLong();
+
+            for (int i = 0; i < chunksCount; i++) {
+                final long start = i * chunkSize;
+                final long end = Math.min(start + chunkSize, totalBytesCount);
+                futures.add(ChunksExecutorHolder.EXECUTOR.submit(() -> {
+                    copyRange(sourceChannel, destChannel, start, end, bytesCopied, isCancelled);
+                    return null;
+                }));
+            }
+
+            final long interval = notifier != null && notifier.notifyInterval() > 0 ? notifier.notifyInterval() : CHUNKED_COPY_NOTIFY_PERIOD;
+
+            IOException exception = null;
+
+            waiting:
+            for (Future<?> future : futures) {
+                boolean isDone = false;
+                while (!isDone) {
+                    try {
+                        future.get(interval, TimeUnit.MILLISECONDS);
+                        isDone = true;
+                    } catch (TimeoutException e) {
+                        if (notifier != null && !isCancelled.get()) {
+                            if (!notifier.onProcessing(sourceFile, destFile, bytesCopied.get(), totalBytesCount)) {
+                                isCancelled.set(true);
+                            }
+                        }
+                    } catch (ExecutionException e) {
+                        if (exception == null) {
+                            exception = e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+                        }
+                        isCancelled.set(true);
+                        isDone = true;
+                    } catch (InterruptedException e) {
+                        logger.e("an InterruptedException occurred during get()", e);
+                        Thread.currentThread().interrupt();
+                        isCancelled.set(true);
+                        break waiting;
+                    }
+                }
+            }
+
+            if (exception != null) {
+                throw exception;
+            }
+
+            result = !isCancelled.get();
+            return result;
+
+        } finally {
+            // channels are closed and destination is deleted only when no range writes anymore
+            isCancelled.set(true);
+            awaitRanges(futures);
+            try {
+                if (sourceRandomAccessFile != null) {
+                    sourceRandomAccessFile.close();
+                }
+                if (destRandomAccessFile != null) {
+                    destRandomAccessFile.close();
+                }
+            } catch (IOException e) {
+                logger.e("an IOException occurred during close()", e);
+            }
+            if (!result && !deleteFile(destFile)) {
+                logger.e("Can't delete incomplete destination file: " + destFile);
+            }
+        }
+    }
+
+    /**
+     * Copies file content through buffer, skipping blocks of {@link #SPARSE_COPY_BLOCK_SIZE} which are all zeros,
+     * so that they become holes in destination if file system supports them; then sets destination length
+     *
+     * @return false if copying was interrupted by notifier
+     * @throws IOException if files can't be opened or copying failed
+     */
+    private static boolean copySparseFile(final File sourceFile, final File destFile,
+                                          @Nullable ContentDigest digest, @Nullable final ISingleCopyNotifier notifier) throws IOException {
+
+        FileInputStream inputStream = null;
+        RandomAccessFile destRandomAccessFile = null;
+
+        try {
+            inputStream = new FileInputStream(sourceFile);
+            destRandomAccessFile = new RandomAccessFile(destFile, "rw");
+
+            final FileChannel sourceChannel = inputStream.getChannel();
+            final FileChannel destChannel = destRandomAccessFile.getChannel();
+
+            final long totalBytesCount = sourceChannel.size();
+            final long interval = notifier != null ? notifier.notifyInterval() : 0;
+
+            // skipped blocks must read as zeros
+            destRandomAccessFile.setLength(0);
+
+            final ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(SPARSE_COPY_BUFFER_SIZE, Math.max(totalBytesCount, 1)));
+
+            long position = 0;
+            long lastNotifyTime = 0;
+
+            while (true) {
+                if (notifier != null) {
+                    if (interval <= 0 || lastNotifyTime == 0 || (System.currentTimeMillis() - lastNotifyTime) >= interval) {
+                        if (!notifier.onProcessing(sourceFile, destFile, position, totalBytesCount)) {
+                            return false;
+                        }
+                        lastNotifyTime = System.currentTimeMillis();
+                    }
+                }
+                buffer.clear();
+                // whole buffer is filled, so blocks are aligned to file offsets
+                while (buffer.hasRemaining()) {
+                    if (sourceChannel.read(buffer) < 0) {
+                        break;
+                    }
+                }
+                final int read = buffer.position();
+                if (read == 0) {
+                    break;
+                }
+                buffer.flip();
+                if (digest != null) {
+                    digest.update(buffer.duplicate());
+                }
+                int runStart = -1;
+                for (int blockStart = 0; blockStart < read; blockStart += SPARSE_COPY_BLOCK_SIZE) {
+                    final int blockEnd = Math.min(blockStart + SPARSE_COPY_BLOCK_SIZE, read);
+                    final boolean isZero = isZeroRange(buffer, blockStart, blockEnd);
+                    if (!isZero && runStart < 0) {
+                        runStart = blockStart;
+                    } else if (isZero && runStart >= 0) {
+                        writeRange(destChannel, buffer, runStart, blockStart, position);
+                        runStart = -1;
+                    }
+                }
+                if (runStart >= 0) {
+                    writeRange(destChannel, buffer, runStart, read, position);
+                }
+                position += read;
+                if (read < buffer.capacity()) {
+                    break;
+                }
+            }
+
+            destRandomAccessFile.setLength(position);
+            return true;
+
+        } finally {
+            try {
+                if (inputStream != null) {
+                    inputStream.close();
+                }
+                if (destRandomAccessFile != null) {
+                    destRandomAccessFile.close();
+                }
+            } catch (IOException e) {
+                logger.e("an IOException occurred during close()", e);
+            }
+        }
+    }
+
+    private static boolean isZeroRange(ByteBuffer buffer, int start, int end) {
+        int i = start;
+        for (; i + 8 <= end; i += 8) {
+            if (buffer.getLong(i) != 0) {
+                return false;
+            }
+        }
+        for (; i < end; i++) {
+            if (buffer.get(i) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * writes buffer range to destination at specified offset of buffer start
+     */
+    private static void writeRange(FileChannel destChannel, ByteBuffer buffer, int start, int end, long bufferPosition) throws IOException {
+        final ByteBuffer range = buffer.duplicate();
+        range.limit(end).position(start);
+        while (range.hasRemaining()) {
+            destChannel.write(range, bufferPosition + range.position());
+        }
+    }
+
+    /**
+     * waits until all range tasks are finished, even if current thread is interrupted;
+     * tasks stop at next buffer when cancelled flag is set, so waiting is short
+     */
+    private static void awaitRanges(List<Future<?>> futures) {
+        boolean isInterrupted = Thread.interrupted();
+        for (Future<?> future : futures) {
+            boolean isDone = false;
+            while (!isDone) {
+                try {
+                    future.get();
+                    isDone = true;
+                } catch (ExecutionException e) {
+                    isDone = true;
+                } catch (InterruptedException e) {
+                    isInterrupted = true;
+                }
+            }
+        }
+        if (isInterrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void copyRange(FileChannel sourceChannel, FileChannel destChannel, long start, long end,
+                                  AtomicLong bytesCopied, AtomicBoolean isCancelled) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(CHUNKED_COPY_BUFFER_SIZE, end - start));
+        long position = start;
+        while (position < end && !isCancelled.get()) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), end - position));
+            final int read = sourceChannel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("Unexpected end of source at position " + position + " of " + end);
+            }
+            buffer.flip();
+            long writePosition = position;
+            while (buffer.hasRemaining()) {
+                writePosition += destChannel.write(buffer, writePosition);
+            }
+            position += read;
+            bytesCopied.addAndGet(read);
+        }
     }
 
     /**
@@ -1431,8 +2018,23 @@ public final class FileHelper {
                                                     final ISingleCopyNotifier singleNotifier, final IMultipleCopyNotifier2 multipleCopyNotifier,
                                                     boolean preserveFileDate, int depth,
                                                     List<File> exclusionList) {
+        return copyFilesWithBuffering2(fromFile, destDir, comparator, singleNotifier, multipleCopyNotifier, preserveFileDate, depth, exclusionList, null);
+    }
 
-        Set<File> result = new LinkedHashSet<>();
+    /**
+     * @param executor if specified, files are copied concurrently on it: singleNotifier and multipleCopyNotifier
+     *                 must be thread-safe, {@link IMultipleCopyNotifier2#onSucceeded(File, File, ContentDigest)}
+     *                 and {@link IMultipleCopyNotifier2#onFailed(File, File)} are called from executor threads
+     *                 while other calls are made from walking thread
+     */
+    public static Set<File> copyFilesWithBuffering2(File fromFile, File destDir,
+                                                    Comparator<? super File> comparator,
+                                                    final ISingleCopyNotifier singleNotifier, final IMultipleCopyNotifier2 multipleCopyNotifier,
+                                                    final boolean preserveFileDate, int depth,
+                                                    List<File> exclusionList, @Nullable final BoundedExecutor executor) {
+
+        // can be accessed from executor threads
+        final Set<File> result = Collections.synchronizedSet(new LinkedHashSet<File>());
 
         if (destDir != null) {
             destDir = FileHelper.createNewDir(destDir.getAbsolutePath());
@@ -1448,100 +2050,154 @@ public final class FileHelper {
             return result;
         }
 
-        final Set<File> files = getFiles(fromFile, GetMode.FILES, comparator, multipleCopyNotifier != null ? new IGetNotifier() {
-            @Override
-            public boolean onProcessing(@NotNull File current, @NotNull Set<File> collected, int currentLevel) {
-                return multipleCopyNotifier.onCalculatingSize(current, collected);
-            }
+        final AtomicLong filesProcessed = new AtomicLong();
 
-            @Override
-            public boolean onGetFile(@NotNull File file) {
-                return true;
-            }
-
-            @Override
-            public boolean onGetFolder(@NotNull File folder) {
-                return false;
-            }
-        } : null, depth);
-
-        if (comparator != null) {
-            List<File> sorted = new ArrayList<>(files);
-            Collections.sort(sorted, comparator);
-            files.clear();
-            files.addAll(sorted);
-        }
+        final File targetDir = destDir;
+        final List<File> excluded = exclusionList;
 
-        int filesProcessed = 0;
-        for (File f : files) {
+        // files are copied as soon as they are found, without collecting whole tree first
+        walk(fromFile, comparator, new IWalkNotifier() {
 
-            if (!isFileExists(f)) {
-                continue;
-            }
+            long filesFound = 0;
 
-            File currentDestDir = null;
-            if (!f.equals(fromFile)) {
-                String part = f.getParent();
-                if (part.startsWith(fromFile.getAbsolutePath())) {
-                    part = part.substring(fromFile.getAbsolutePath().length(), part.length());
-                }
-                if (!TextUtils.isEmpty(part)) {
-                    currentDestDir = new File(destDir, part);
+            @NotNull
+            @Override
+            public FileVisitResult onEnterFolder(@NotNull File folder, int currentLevel) {
+                if (multipleCopyNotifier != null) {
+                    if (!multipleCopyNotifier.onCalculatingSize(folder, Collections.<File>emptySet())) {
+                        return FileVisitResult.TERMINATE;
+                    }
+                    if (!multipleCopyNotifier.confirmFolder(folder, getDestDir(folder.getAbsolutePath()))) {
+                        return FileVisitResult.SKIP_SUBTREE;
+                    }
                 }
-            }
-            if (currentDestDir == null) {
-                currentDestDir = destDir;
+                return FileVisitResult.CONTINUE;
             }
 
-            if (multipleCopyNotifier != null) {
-                if (!multipleCopyNotifier.onProcessing(f, currentDestDir, Collections.unmodifiableSet(result), filesProcessed, files.size())) {
-                    break;
-                }
-            }
+            @NotNull
+            @Override
+            public FileVisitResult onFile(@NotNull final File f, int currentLevel) {
 
-            if (exclusionList == null || !exclusionList.contains(f)) {
+                filesFound++;
 
-                File destFile = null;
+                if (!isFileExists(f)) {
+                    return FileVisitResult.CONTINUE;
+                }
 
-                boolean confirmCopy = true;
+                final File currentDestDir = !f.equals(fromFile) ? getDestDir(f.getAbsoluteFile().getParent()) : targetDir;
 
                 if (multipleCopyNotifier != null) {
-                    confirmCopy = multipleCopyNotifier.confirmCopy(f, currentDestDir);
+                    if (!multipleCopyNotifier.onProcessing(f, currentDestDir, Collections.unmodifiableSet(result), filesProcessed.get(), filesFound)) {
+                        return FileVisitResult.TERMINATE;
+                    }
                 }
 
-                if (confirmCopy) {
+                Runnable copyTask = null;
 
-                    if (multipleCopyNotifier != null) {
-                        destFile = multipleCopyNotifier.onBeforeCopy(f, currentDestDir);
-                    }
+                if (excluded == null || !excluded.contains(f)) {
 
-                    if (destFile == null || destFile.equals(f)) {
-                        destFile = new File(currentDestDir, f.getName());
-                    }
+                    File destFile = null;
+
+                    boolean confirmCopy = true;
 
                     boolean rewrite = false;
 
-                    if (multipleCopyNotifier != null && isFileExists(destFile)) {
-                        rewrite = multipleCopyNotifier.onExists(destFile);
+                    CopyStrategy strategy = null;
+
+                    ContentDigest digest = null;
+
+                    if (multipleCopyNotifier != null) {
+                        confirmCopy = multipleCopyNotifier.confirmCopy(f, currentDestDir);
                     }
 
-                    File resultFile = copyFileWithBuffering(f, destFile.getName(), destFile.getParent(), rewrite,
-                            preserveFileDate, singleNotifier);
+                    if (confirmCopy) {
 
-                    if (resultFile != null) {
                         if (multipleCopyNotifier != null) {
-                            multipleCopyNotifier.onSucceeded(f, resultFile);
+                            destFile = multipleCopyNotifier.onBeforeCopy(f, currentDestDir);
                         }
-                        result.add(resultFile);
-                    } else {
+
+                        if (destFile == null || destFile.equals(f)) {
+                            destFile = new File(currentDestDir, f.getName());
+                        }
+
+                        if (multipleCopyNotifier != null && isFileExists(destFile)) {
+                            rewrite = multipleCopyNotifier.onExists(destFile);
+                        }
+
                         if (multipleCopyNotifier != null) {
-                            multipleCopyNotifier.onFailed(f, currentDestDir);
+                            strategy = multipleCopyNotifier.getCopyStrategy(f, destFile);
+                            digest = multipleCopyNotifier.getContentDigest(f, destFile);
                         }
                     }
+
+                    if (confirmCopy) {
+
+                        final File finalDestFile = destFile;
+                        final File finalDestDir = currentDestDir;
+                        final boolean finalRewrite = rewrite;
+                        final CopyStrategy finalStrategy = strategy != null ? strategy : CopyStrategy.CHANNEL;
+                        final ContentDigest finalDigest = digest;
+
+                        copyTask = () -> {
+
+                            if (multipleCopyNotifier != null && !multipleCopyNotifier.confirmCopyStart(f, finalDestFile)) {
+                                filesProcessed.incrementAndGet();
+                                return;
+                            }
+
+                            File resultFile = copyFileWithBuffering(f, finalDestFile.getName(), finalDestFile.getParent(), finalRewrite,
+                                    preserveFileDate, finalStrategy, finalDigest, singleNotifier);
+
+                            if (resultFile != null) {
+                                if (multipleCopyNotifier != null) {
+                                    multipleCopyNotifier.onSucceeded(f, resultFile, finalDigest);
+                                }
+                                result.add(resultFile);
+                            } else {
+                                if (multipleCopyNotifier != null) {
+                                    multipleCopyNotifier.onFailed(f, finalDestDir);
+                                }
+                            }
+
+                            filesProcessed.incrementAndGet();
+                        };
+                    }
+                }
+
+                if (copyTask == null) {
+                    filesProcessed.incrementAndGet();
+                } else if (executor == null) {
+                    copyTask.run();
+                } else if (!executor.execute(copyTask)) {
+                    return FileVisitResult.TERMINATE;
                 }
+                return FileVisitResult.CONTINUE;
             }
 
-            filesProcessed++;
+            @NotNull
+            @Override
+            public FileVisitResult onLeaveFolder(@NotNull File folder, int currentLevel) {
+                if (multipleCopyNotifier != null) {
+                    multipleCopyNotifier.onLeaveFolder(folder);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            /**
+             * @param path source folder path
+             * @return same folder within destination
+             */
+            @NotNull
+            private File getDestDir(String path) {
+                if (path.startsWith(fromFile.getAbsolutePath())) {
+                    path = path.substring(fromFile.getAbsolutePath().length(), path.length());
+                }
+                return !TextUtils.isEmpty(path) ? new File(targetDir, path) : targetDir;
+            }
+        }, depth);
+
+        if (executor != null) {
+            executor.awaitCompletion();
         }
 
         if (comparator != null) {
@@ -1673,10 +2329,218 @@ public final class FileHelper {
         return sb.toString();
     }
 
+    /**
+     * Lists one folder: files are passed to notifier in current thread, subdirectories are forked
+     */
+    private static class WalkTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        @NotNull
+        private final File folder;
+
+        @NotNull
+        private final IWalkNotifier notifier;
+
+        private final int depth;
+
+        private final int currentLevel;
+
+        @NotNull
+        private final AtomicBoolean terminated;
+
+        WalkTask(@NotNull File folder, @NotNull IWalkNotifier notifier, int depth, int currentLevel, @NotNull AtomicBoolean terminated) {
+            this.folder = folder;
+            this.notifier = notifier;
+            this.depth = depth;
+            this.currentLevel = currentLevel;
+            this.terminated = terminated;
+        }
+
+        @Override
+        protected void compute() {
+
+            if (terminated.get()) {
+                return;
+            }
+
+            final FileVisitResult enterResult = notifier.onEnterFolder(folder, currentLevel);
+            if (enterResult == FileVisitResult.TERMINATE) {
+                terminated.set(true);
+            }
+            if (enterResult != FileVisitResult.CONTINUE) {
+                return;
+            }
+
+            final List<WalkTask> subTasks = new ArrayList<>();
+
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(folder.toPath())) {
+                for (Path path : stream) {
+                    if (terminated.get()) {
+                        break;
+                    }
+                    final File entry = path.toFile();
+                    if (entry.isDirectory()) {
+                        if (depth == DEPTH_UNLIMITED || depth > currentLevel) {
+                            WalkTask subTask = new WalkTask(entry, notifier, depth, currentLevel + 1, terminated);
+                            subTask.fork();
+                            subTasks.add(subTask);
+                        }
+                    } else if (entry.isFile()) {
+                        final FileVisitResult result = notifier.onFile(entry, currentLevel);
+                        if (result == FileVisitResult.TERMINATE) {
+                            terminated.set(true);
+                            break;
+                        }
+                        if (result == FileVisitResult.SKIP_SIBLINGS) {
+                            break;
+                        }
+                    } else {
+                        logger.e("incorrect file or folder: " + entry);
+                    }
+                }
+            } catch (IOException | DirectoryIteratorException e) {
+                logger.e("an Exception occurred during listing " + folder, e);
+            }
+
+            for (WalkTask subTask : subTasks) {
+                subTask.join();
+            }
+
+            if (!terminated.get() && notifier.onLeaveFolder(folder, currentLevel) == FileVisitResult.TERMINATE) {
+                terminated.set(true);
+            }
+        }
+    }
+
+    /**
+     * Adapts {@link IGetNotifier} to walking: collects matched entries to result,
+     * notifier calls are serialized so it can be used by {@link #walkParallel(File, IWalkNotifier, int, ForkJoinPool)}
+     */
+    private static class GetWalkNotifier implements IWalkNotifier {
+
+        @NotNull
+        private final GetMode mode;
+
+        /**
+         * if null, all entries are matched
+         */
+        @Nullable
+        private final CompareUtils.StringMatcher nameMatcher;
+
+        @Nullable
+        private final IGetNotifier notifier;
+
+        @NotNull
+        private final Set<File> result;
+
+        @NotNull
+        private final Set<File> collected;
+
+        GetWalkNotifier(@NotNull GetMode mode, @Nullable String name, int searchFlags, @Nullable IGetNotifier notifier, @NotNull Set<File> result) {
+            this.mode = mode;
+            this.nameMatcher = name != null ? CompareUtils.compile(name, searchFlags) : null;
+            this.notifier = notifier;
+            this.result = result;
+            this.collected = Collections.unmodifiableSet(result);
+        }
+
+        @NotNull
+        @Override
+        public FileVisitResult onEnterFolder(@NotNull File folder, int currentLevel) {
+            if (notifier != null) {
+                synchronized (this) {
+                    if (!notifier.onProcessing(folder, collected, currentLevel)) {
+                        return FileVisitResult.SKIP_SUBTREE;
+                    }
+                }
+            }
+            return FileVisitResult.CONTINUE;
+        }
+
+        @NotNull
+        @Override
+        public FileVisitResult onFile(@NotNull File file, int currentLevel) {
+            if (notifier == null) {
+                if (mode == GetMode.FILES && matches(file)) {
+                    result.add(file);
+                }
+            } else {
+                synchronized (this) {
+                    if (notifier.onProcessing(file, collected, currentLevel)) {
+                        if (mode == GetMode.FILES && matches(file) && notifier.onGetFile(file)) {
+                            result.add(file);
+                        }
+                    }
+                }
+            }
+            return FileVisitResult.CONTINUE;
+        }
+
+        @NotNull
+        @Override
+        public FileVisitResult onLeaveFolder(@NotNull File folder, int currentLevel) {
+            if ((mode == GetMode.FOLDERS || mode == GetMode.ALL) && matches(folder)) {
+                if (notifier == null) {
+                    result.add(folder);
+                } else {
+                    synchronized (this) {
+                        if (notifier.onGetFolder(folder)) {
+                            result.add(folder);
+                        }
+                    }
+                }
+            }
+            return FileVisitResult.CONTINUE;
+        }
+
+        private boolean matches(@NotNull File file) {
+            return nameMatcher == null || nameMatcher.matches(file.getName());
+        }
+    }
+
     public enum GetMode {
         FILES, FOLDERS, ALL
     }
 
+    public enum CopyStrategy {
+
+        /**
+         * bytes are pumped through heap buffer with {@link StreamUtils#revectorStream(InputStream, OutputStream, StreamUtils.IStreamNotifier)}
+         */
+        STREAM,
+
+        /**
+         * bytes are moved with {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)};
+         * falls back to {@link #STREAM} on failure
+         */
+        CHANNEL,
+
+        /**
+         * bytes are copied between memory mapped windows of source and preallocated destination;
+         * falls back to {@link #STREAM} on failure
+         */
+        MAPPED,
+
+        /**
+         * large file is split into ranges of at least {@link #CHUNKED_COPY_MIN_CHUNK_SIZE},
+         * copied concurrently into preallocated destination; falls back to {@link #STREAM} on failure
+         */
+        CHUNKED,
+
+        /**
+         * if destination exists and is to be rewritten, only bytes which are not found in it are written,
+         * see {@link DeltaTransfer}; otherwise or on failure falls back to {@link #CHANNEL}
+         */
+        DELTA,
+
+        /**
+         * bytes are copied through buffer and blocks of {@link #SPARSE_COPY_BLOCK_SIZE} consisting of zeros are not written,
+         * so holes of sparse source stay holes; falls back to {@link #STREAM} on failure
+         */
+        SPARSE
+    }
+
     public interface IGetNotifier {
 
         /**
@@ -1696,6 +2560,31 @@ public final class FileHelper {
         boolean onGetFolder(@NotNull File folder);
     }
 
+    public interface IWalkNotifier {
+
+        /**
+         * @return {@link FileVisitResult#SKIP_SUBTREE} if client code doesn't want to walk into this folder,
+         * {@link FileVisitResult#TERMINATE} if client code wants to interrupt walking
+         */
+        @NotNull
+        FileVisitResult onEnterFolder(@NotNull File folder, int currentLevel);
+
+        /**
+         * @return {@link FileVisitResult#SKIP_SIBLINGS} if client code doesn't want to walk remaining entries of this folder,
+         * {@link FileVisitResult#TERMINATE} if client code wants to interrupt walking
+         */
+        @NotNull
+        FileVisitResult onFile(@NotNull File file, int currentLevel);
+
+        /**
+         * called after all entries of entered folder were walked
+         *
+         * @return {@link FileVisitResult#TERMINATE} if client code wants to interrupt walking
+         */
+        @NotNull
+        FileVisitResult onLeaveFolder(@NotNull File folder, int currentLevel);
+    }
+
     public interface IDeleteNotifier {
 
         /**
@@ -1743,15 +2632,31 @@ public final class FileHelper {
     public interface IMultipleCopyNotifier2 {
 
         /**
+         * called when entering next folder; files are copied while walking, so collected may be empty
+         *
          * @return false if process should be interrupted
          */
         boolean onCalculatingSize(File current, Set<File> collected);
 
         /**
+         * @param filesTotal number of files found so far
          * @return false if process should be interrupted
          */
         boolean onProcessing(File currentFile, File destDir, Set<File> copied, long filesProcessed, long filesTotal);
 
+        /**
+         * @return true if content of specified source folder should be walked, false to skip whole subtree
+         */
+        default boolean confirmFolder(File currentFolder, File destDir) {
+            return true;
+        }
+
+        /**
+         * called after all entries of confirmed folder were walked, their copying may be still in progress
+         */
+        default void onLeaveFolder(File currentFolder) {
+        }
+
         /**
          * true if copying confirmed by client code, false to cancel
          */
@@ -1762,12 +2667,44 @@ public final class FileHelper {
          */
         File onBeforeCopy(File currentFile, File destDir);
 
+        /**
+         * called in copy task, from executor thread if it's specified, right before copying confirmed file
+         *
+         * @return true if copying should start, false if destination file was created by client code some other way
+         */
+        default boolean confirmCopyStart(File currentFile, File destFile) {
+            return true;
+        }
+
         /**
          * @return true if specified destination file is should be replaced (it currently exists)
          */
         boolean onExists(File destFile);
 
-        void onSucceeded(File currentFile, File resultFile);
+        /**
+         * @return strategy to copy specified file with or null for default
+         */
+        default CopyStrategy getCopyStrategy(File currentFile, File destFile) {
+            return null;
+        }
+
+        /**
+         * @return digest to be fed with bytes of specified file while copying or null
+         */
+        @Nullable
+        default ContentDigest getContentDigest(File currentFile, File destFile) {
+            return null;
+        }
+
+        default void onSucceeded(File currentFile, File resultFile) {
+        }
+
+        /**
+         * @param digest one returned by {@link #getContentDigest(File, File)}, contains digest of copied content
+         */
+        default void onSucceeded(File currentFile, File resultFile, @Nullable ContentDigest digest) {
+            onSucceeded(currentFile, resultFile);
+        }
 
         void onFailed(File currentFile, File destDir);
     }
@@ -2,10 +2,18 @@ package net.maxsmr.copyutil.utils;
 
 import net.maxsmr.copyutil.utils.support.Pair;
 
+import org.jetbrains.annotations.Nullable;
+
 import java.io.IOException;
 import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
 import java.net.URL;
+import java.nio.ByteBuffer;
 import java.util.Enumeration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.jar.Attributes;
 import java.util.jar.Manifest;
 
@@ -57,4 +65,59 @@ public final class JvmUtils {
         }
         return null;
     }
+
+    /**
+     * @return executor which starts new virtual thread for each task
+     * or null if current JVM doesn't support virtual threads (before 21)
+     */
+    @Nullable
+    public static ExecutorService newVirtualThreadPerTaskExecutor() {
+        final Method method;
+        try {
+            method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+        try {
+            return (ExecutorService) method.invoke(null);
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Releases memory mapping of specified direct buffer without waiting for GC;
+     * buffer must not be accessed after that
+     *
+     * @return true if buffer was unmapped
+     */
+    public static boolean unmap(@Nullable ByteBuffer buffer) {
+        if (buffer == null || !buffer.isDirect()) {
+            return false;
+        }
+        try {
+            try {
+                // Java 9 and newer
+                final Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+                final Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+                final Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+                theUnsafe.setAccessible(true);
+                invokeCleaner.invoke(theUnsafe.get(null), buffer);
+                return true;
+            } catch (NoSuchMethodException e) {
+                // Java 8
+                final Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+                final Object cleaner = cleanerMethod.invoke(buffer);
+                if (cleaner != null) {
+                    cleaner.getClass().getMethod("clean").invoke(cleaner);
+                    return true;
+                }
+            }
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            e.printStackTrace();
+        }
+        return false;
+    }
 }
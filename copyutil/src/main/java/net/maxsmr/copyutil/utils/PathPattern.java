@@ -0,0 +1,143 @@
+package net.maxsmr.copyutil.utils;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.nio.file.FileSystems;
+import java.nio.file.InvalidPathException;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+
+/**
+ * Relative path pattern in {@link java.nio.file.FileSystem#getPathMatcher(String)} syntax
+ * ("glob:**&#47;2024/*.log" or "regex:logs/\\d+/.*"), compiled once;
+ * leading components without special chars form base directory, so only it has to be walked
+ */
+public class PathPattern {
+
+    public static final String GLOB_PREFIX = "glob:";
+
+    public static final String REGEX_PREFIX = "regex:";
+
+    private static final String GLOB_SPECIAL_CHARS = "*?[]{}\\";
+
+    private static final String REGEX_SPECIAL_CHARS = "\\.[]{}()<>*+-=!?^$|";
+
+    @NotNull
+    private final String pattern;
+
+    @NotNull
+    private final PathMatcher matcher;
+
+    @NotNull
+    private final String baseDir;
+
+    private PathPattern(@NotNull String pattern, @NotNull PathMatcher matcher, @NotNull String baseDir) {
+        this.pattern = pattern;
+        this.matcher = matcher;
+        this.baseDir = baseDir;
+    }
+
+    public static boolean isPattern(@Nullable String entry) {
+        return entry != null && (entry.startsWith(GLOB_PREFIX) || entry.startsWith(REGEX_PREFIX));
+    }
+
+    /**
+     * @return compiled pattern or null if entry is literal path
+     * @throws IllegalArgumentException if pattern syntax is incorrect
+     */
+    @Nullable
+    public static PathPattern compile(@Nullable String entry) {
+        if (!isPattern(entry)) {
+            return null;
+        }
+        final boolean isGlob = entry.startsWith(GLOB_PREFIX);
+        final PathMatcher matcher;
+        try {
+            matcher = FileSystems.getDefault().getPathMatcher(entry);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Incorrect path pattern \"" + entry + "\": " + e.getMessage(), e);
+        }
+        String expression = entry.substring(isGlob ? GLOB_PREFIX.length() : REGEX_PREFIX.length());
+        if (!isGlob && expression.startsWith("^")) {
+            expression = expression.substring(1);
+        }
+        // alternation may lead to other directory than first component, so whole root is walked
+        final String baseDir = !isGlob && expression.indexOf('|') >= 0 ?
+                "" : getLiteralPrefix(expression, isGlob ? GLOB_SPECIAL_CHARS : REGEX_SPECIAL_CHARS);
+        return new PathPattern(entry, matcher, baseDir);
+    }
+
+    @NotNull
+    public String getPattern() {
+        return pattern;
+    }
+
+    /**
+     * @return deepest directory, relative to same root as matched paths, which contains all matching paths;
+     * empty for root
+     */
+    @NotNull
+    public String getBaseDir() {
+        return baseDir;
+    }
+
+    /**
+     * @param relativePath path relative to root, leading separators are ignored
+     */
+    public boolean matches(@Nullable String relativePath) {
+        if (relativePath == null) {
+            return false;
+        }
+        int start = 0;
+        while (start < relativePath.length() && (relativePath.charAt(start) == '/' || relativePath.charAt(start) == File.separatorChar)) {
+            start++;
+        }
+        try {
+            return matcher.matches(Paths.get(relativePath.substring(start)));
+        } catch (InvalidPathException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return pattern;
+    }
+
+    /**
+     * @return leading directory components of expression which have no special chars
+     */
+    @NotNull
+    private static String getLiteralPrefix(@NotNull String expression, @NotNull String specialChars) {
+        final StringBuilder prefix = new StringBuilder();
+        int start = 0;
+        while (true) {
+            final int end = expression.indexOf('/', start);
+            if (end < 0) {
+                // last component is name of file itself
+                break;
+            }
+            final String component = expression.substring(start, end);
+            if (component.isEmpty() || hasAnyChar(component, specialChars)) {
+                break;
+            }
+            if (prefix.length() > 0) {
+                prefix.append(File.separatorChar);
+            }
+            prefix.append(component);
+            start = end + 1;
+        }
+        return prefix.toString();
+    }
+
+    private static boolean hasAnyChar(@NotNull String s, @NotNull String chars) {
+        for (int i = 0; i < s.length(); i++) {
+            if (chars.indexOf(s.charAt(i)) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,131 @@
+package net.maxsmr.copyutil.utils;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Relative paths compiled into tree of path components:
+ * finding rule which is prefix of specified path takes time proportional to its depth
+ * instead of count of rules; both '/' and {@link File#separatorChar} are treated as separators
+ */
+public class PathTrie {
+
+    private final Node root = new Node();
+
+    private int size;
+
+    public PathTrie() {
+    }
+
+    public PathTrie(@Nullable Collection<String> paths) {
+        if (paths != null) {
+            for (String path : paths) {
+                add(path);
+            }
+        }
+    }
+
+    /**
+     * @param path relative path; empty ones and ones consisting of separators only are ignored
+     * @return false if path was ignored or already added
+     */
+    public boolean add(@Nullable String path) {
+        if (path == null) {
+            return false;
+        }
+        Node node = root;
+        int start = 0;
+        while (true) {
+            start = skipSeparators(path, start);
+            if (start == path.length()) {
+                break;
+            }
+            final int end = findSeparator(path, start);
+            final String component = path.substring(start, end);
+            Node child = node.children.get(component);
+            if (child == null) {
+                child = new Node();
+                node.children.put(component, child);
+            }
+            node = child;
+            start = end;
+        }
+        if (node == root || node.rule != null) {
+            return false;
+        }
+        node.rule = path;
+        size++;
+        return true;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @param relativePath path relative to same root as rules
+     * @return added rule which components are leading components of specified path (shortest one) or null
+     */
+    @Nullable
+    public String findPrefix(@Nullable String relativePath) {
+        if (relativePath == null || isEmpty()) {
+            return null;
+        }
+        Node node = root;
+        int start = 0;
+        while (true) {
+            start = skipSeparators(relativePath, start);
+            if (start == relativePath.length()) {
+                return null;
+            }
+            final int end = findSeparator(relativePath, start);
+            node = node.children.get(relativePath.substring(start, end));
+            if (node == null) {
+                return null;
+            }
+            if (node.rule != null) {
+                return node.rule;
+            }
+            start = end;
+        }
+    }
+
+    public boolean matches(@Nullable String relativePath) {
+        return findPrefix(relativePath) != null;
+    }
+
+    private static int skipSeparators(@NotNull String path, int index) {
+        while (index < path.length() && isSeparator(path.charAt(index))) {
+            index++;
+        }
+        return index;
+    }
+
+    private static int findSeparator(@NotNull String path, int index) {
+        while (index < path.length() && !isSeparator(path.charAt(index))) {
+            index++;
+        }
+        return index;
+    }
+
+    private static boolean isSeparator(char c) {
+        return c == '/' || c == File.separatorChar;
+    }
+
+    private static class Node {
+
+        final Map<String, Node> children = new HashMap<>();
+
+        @Nullable
+        String rule;
+    }
+}
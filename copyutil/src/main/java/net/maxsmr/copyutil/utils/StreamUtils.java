@@ -24,6 +24,28 @@ public final class StreamUtils {
 
     private final static BaseLogger logger = BaseLoggerHolder.getInstance().getLogger(StreamUtils.class);
 
+    public final static int MIN_BUFFER_SIZE = 64 * 1024;
+
+    public final static int MAX_BUFFER_SIZE = 4 * 1024 * 1024;
+
+    /**
+     * count of bytes to write before checking if {@link IStreamNotifier} should be notified
+     */
+    public final static long NOTIFY_BYTES_THRESHOLD = 1024 * 1024;
+
+    /**
+     * max total size of released buffers kept for reuse
+     */
+    public final static long POOLED_BUFFERS_MAX_SIZE = 4 * MAX_BUFFER_SIZE;
+
+    /**
+     * buffers released by {@link #revectorStream} calls of any thread, reused by next calls;
+     * shared instead of kept per thread, because with virtual threads each copy runs on new thread
+     */
+    private final static List<byte[]> pooledBuffers = new ArrayList<>();
+
+    private static long pooledBuffersSize;
+
     private StreamUtils() {
         throw new AssertionError("no instances.");
     }
@@ -41,40 +63,60 @@ public final class StreamUtils {
     }
 
     public static boolean revectorStream(InputStream in, OutputStream out, IStreamNotifier notifier, boolean closeInput, boolean closeOutput) {
+        return revectorStream(in, out, notifier, closeInput, closeOutput, 0);
+    }
+
+    /**
+     * @param totalBytesCount expected count of bytes in input, used to choose buffer size;
+     *                        if not positive, {@link InputStream#available()} is used
+     */
+    public static boolean revectorStream(InputStream in, OutputStream out, IStreamNotifier notifier, boolean closeInput, boolean closeOutput, long totalBytesCount) {
 
         if (in == null || out == null)
             return false;
 
         boolean result = true;
 
-        try {
-            byte[] buff = new byte[256];
+        byte[] buff = null;
 
-            int bytesWriteCount = 0;
-            int totalBytesCount = 0;
-            try {
-                totalBytesCount = in.available();
-            } catch (IOException e) {
-                logger.e("an IOException occurred", e);
+        try {
+            if (totalBytesCount <= 0) {
+                try {
+                    totalBytesCount = in.available();
+                } catch (IOException e) {
+                    logger.e("an IOException occurred", e);
+                }
             }
 
+            final int bufferSize = getBufferSize(totalBytesCount);
+            buff = obtainBuffer(bufferSize);
+
+            final long interval = notifier != null ? notifier.notifyInterval() : 0;
+
+            long bytesWriteCount = 0;
+            long bytesSinceNotify = 0;
+
             int len;
+            boolean isFirstNotify = true;
             long lastNotifyTime = 0;
-            while ((len = in.read(buff)) > 0) {
-                if (notifier != null) {
-                    long interval = notifier.notifyInterval();
-                    if (interval <= 0 || lastNotifyTime == 0 || (System.currentTimeMillis() - lastNotifyTime) >= interval) {
+            while ((len = in.read(buff, 0, bufferSize)) > 0) {
+                if (notifier != null && (isFirstNotify || bytesSinceNotify >= NOTIFY_BYTES_THRESHOLD)) {
+                    // clock is checked only after threshold was passed
+                    final long currentTime = interval > 0 ? System.currentTimeMillis() : 0;
+                    if (isFirstNotify || interval <= 0 || (currentTime - lastNotifyTime) >= interval) {
                         if (!notifier.onProcessing(in, out, bytesWriteCount,
                                 totalBytesCount > 0 && bytesWriteCount <= totalBytesCount ? totalBytesCount - bytesWriteCount : 0)) {
                             result = false;
                             break;
                         }
-                        lastNotifyTime = System.currentTimeMillis();
+                        isFirstNotify = false;
+                        lastNotifyTime = currentTime;
                     }
-
+                    bytesSinceNotify = 0;
                 }
                 out.write(buff, 0, len);
                 bytesWriteCount += len;
+                bytesSinceNotify += len;
             }
 
         } catch (IOException e) {
@@ -82,6 +124,9 @@ public final class StreamUtils {
             result = false;
 
         } finally {
+            if (buff != null) {
+                releaseBuffer(buff);
+            }
             try {
                 if (closeInput) {
                     in.close();
@@ -97,6 +142,53 @@ public final class StreamUtils {
         return result;
     }
 
+    /**
+     * @return power of 2 buffer size, enough to hold specified bytes count,
+     * in range from {@link #MIN_BUFFER_SIZE} to {@link #MAX_BUFFER_SIZE}
+     */
+    public static int getBufferSize(long totalBytesCount) {
+        if (totalBytesCount <= MIN_BUFFER_SIZE) {
+            return MIN_BUFFER_SIZE;
+        }
+        if (totalBytesCount >= MAX_BUFFER_SIZE) {
+            return MAX_BUFFER_SIZE;
+        }
+        return Integer.highestOneBit((int) totalBytesCount - 1) << 1;
+    }
+
+    /**
+     * @return smallest pooled buffer which fits, otherwise new one
+     */
+    private static byte[] obtainBuffer(int size) {
+        synchronized (pooledBuffers) {
+            int index = -1;
+            for (int i = 0; i < pooledBuffers.size(); i++) {
+                final int length = pooledBuffers.get(i).length;
+                if (length >= size && (index < 0 || length < pooledBuffers.get(index).length)) {
+                    index = i;
+                }
+            }
+            if (index >= 0) {
+                final byte[] buffer = pooledBuffers.remove(index);
+                pooledBuffersSize -= buffer.length;
+                return buffer;
+            }
+        }
+        return new byte[size];
+    }
+
+    /**
+     * returns buffer to pool unless pool is full, then it's left to GC
+     */
+    private static void releaseBuffer(byte[] buffer) {
+        synchronized (pooledBuffers) {
+            if (pooledBuffersSize + buffer.length <= POOLED_BUFFERS_MAX_SIZE) {
+                pooledBuffers.add(buffer);
+                pooledBuffersSize += buffer.length;
+            }
+        }
+    }
+
     @Nullable
     public static byte[] readBytesFromInputStream(InputStream inputStream) {
         return readBytesFromInputStream(inputStream, true);